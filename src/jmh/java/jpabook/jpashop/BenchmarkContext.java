@@ -0,0 +1,51 @@
+package jpabook.jpashop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 벤치마크용 스프링 컨텍스트.
+ * 웹 서버 없이 JPA 계층만 인메모리 H2 위에 띄운다.
+ * trial마다 독립된 DB를 쓰도록 매번 새로운 DB 이름을 사용한다.
+ */
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * @param args "--key=value" 형식의 추가 설정. 커맨드라인 인자이므로 application.yml 보다 우선한다.
+     */
+    public static ConfigurableApplicationContext start(String... args) {
+        List<String> allArgs = new ArrayList<>(Arrays.asList(
+                "--spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--spring.jpa.properties.hibernate.format_sql=false",
+                "--decorator.datasource.p6spy.enable-logging=false",
+                "--logging.level.org.hibernate.SQL=warn"));
+        allArgs.addAll(Arrays.asList(args));
+
+        return new SpringApplicationBuilder(JpashopApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(allArgs.toArray(new String[0]));
+    }
+
+    public static TransactionTemplate transaction(ApplicationContext context) {
+        return new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    public static TransactionTemplate readOnlyTransaction(ApplicationContext context) {
+        TransactionTemplate tx = transaction(context);
+        tx.setReadOnly(true);
+        return tx;
+    }
+}
@@ -0,0 +1,38 @@
+package jpabook.jpashop;
+
+import org.springframework.context.ApplicationContext;
+
+import jpabook.jpashop.datagen.DataGenerator;
+import jpabook.jpashop.datagen.DataGeneratorProperties;
+
+/**
+ * 벤치마크용 데이터 적재. DataGenerator 로 JDBC 배치 적재한다.
+ */
+public final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    public static void seedOrders(ApplicationContext context, int orderCount, int itemsPerOrder) {
+        DataGeneratorProperties spec = new DataGeneratorProperties();
+        spec.setMembers(Math.max(1, orderCount / 10));
+        spec.setItems(100);
+        spec.setOrders(orderCount);
+        spec.setMinLinesPerOrder(itemsPerOrder);
+        spec.setMaxLinesPerOrder(itemsPerOrder);
+
+        context.getBean(DataGenerator.class).generate(spec);
+    }
+
+    /**
+     * 주문 없이 회원, 상품만 적재한다.
+     */
+    public static void seedCatalog(ApplicationContext context, int memberCount, int itemCount) {
+        DataGeneratorProperties spec = new DataGeneratorProperties();
+        spec.setMembers(memberCount);
+        spec.setItems(itemCount);
+        spec.setOrders(0);
+
+        context.getBean(DataGenerator.class).generate(spec);
+    }
+}
@@ -0,0 +1,117 @@
+package jpabook.jpashop.api;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.BenchmarkContext;
+import jpabook.jpashop.BenchmarkData;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto;
+
+/**
+ * 주문 조회 방식(v1 ~ v5, simple-orders v2 ~ v4)별 처리량/지연시간/할당량 비교.
+ * 각 호출은 API 와 같이 리포지토리 조회 + DTO 변환까지 포함하고,
+ * 지연로딩이 동작하도록 읽기 전용 트랜잭션 하나 안에서 실행한다. (호출마다 새로운 영속성 컨텍스트)
+ * findAllByString 은 최대 1000건까지만 조회하므로, orderCount 가 1000 보다 크면 v1, v2, simple-orders v2 는 1000건만 읽는다.
+ *
+ * ./gradlew jmh -Pjmh.includes=OrderReadPathBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OrderReadPathBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    int orderCount;
+
+    @Param({"2"})
+    int itemsPerOrder;
+
+    private ConfigurableApplicationContext context;
+    private TransactionTemplate readOnlyTx;
+    private OrderApiController orderApi;
+    private OrderSimpleApiController orderSimpleApi;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkData.seedOrders(context, orderCount, itemsPerOrder);
+
+        readOnlyTx = BenchmarkContext.readOnlyTransaction(context);
+        orderApi = context.getBean(OrderApiController.class);
+        orderSimpleApi = context.getBean(OrderSimpleApiController.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /** findAllByString + 엔티티 지연로딩 강제 초기화 */
+    @Benchmark
+    public List<Order> ordersV1_entity() {
+        return readOnlyTx.execute(status -> orderApi.ordersV1());
+    }
+
+    /** findAllByString + DTO 변환 (지연로딩) */
+    @Benchmark
+    public Object ordersV2_dto() {
+        return readOnlyTx.execute(status -> orderApi.ordersV2());
+    }
+
+    /** findAllWithItem (컬렉션 페치조인) + DTO 변환 */
+    @Benchmark
+    public Object ordersV3_fetchJoin() {
+        return readOnlyTx.execute(status -> orderApi.ordersV3());
+    }
+
+    /** findAllWithMemberDelivery(offset, limit) + 컬렉션 batch fetch + DTO 변환. 전체를 한 페이지로 조회 */
+    @Benchmark
+    public Object ordersV3_1_batchFetch() {
+        return readOnlyTx.execute(status -> orderApi.ordersV3_page(0, orderCount));
+    }
+
+    /** findOrderQueryDtos. DTO 직접 조회, 컬렉션 N번 */
+    @Benchmark
+    public List<OrderQueryDto> ordersV4_queryDto() {
+        return readOnlyTx.execute(status -> orderApi.ordersV4());
+    }
+
+    /** findAllByDto_optimization. DTO 직접 조회, 컬렉션 IN 1번 */
+    @Benchmark
+    public List<OrderQueryDto> ordersV5_queryDtoIn() {
+        return readOnlyTx.execute(status -> orderApi.ordersV5());
+    }
+
+    /** simple-orders v2. findAllByString + DTO 변환 (member, delivery 지연로딩) */
+    @Benchmark
+    public Object simpleOrdersV2_dto() {
+        return readOnlyTx.execute(status -> orderSimpleApi.ordersV2());
+    }
+
+    /** simple-orders v3. findAllWithMemberDelivery (페치조인) + DTO 변환 */
+    @Benchmark
+    public Object simpleOrdersV3_fetchJoin() {
+        return readOnlyTx.execute(status -> orderSimpleApi.ordersV3());
+    }
+
+    /** simple-orders v4. findOrderDtos (DTO 직접 조회) */
+    @Benchmark
+    public List<OrderSimpleQueryDto> simpleOrdersV4_queryDto() {
+        return readOnlyTx.execute(status -> orderSimpleApi.ordersV4());
+    }
+}
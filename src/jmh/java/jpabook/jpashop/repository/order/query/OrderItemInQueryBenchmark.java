@@ -0,0 +1,72 @@
+package jpabook.jpashop.repository.order.query;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.BenchmarkContext;
+import jpabook.jpashop.BenchmarkData;
+
+/**
+ * OrderQueryRepository.findOrderItemMap 의 IN절 chunk 크기별 비교.
+ * chunkSize=100000 은 chunk를 나누지 않는 기존 방식(IN절 1개)과 같다.
+ * 어느 주문 수부터 chunk 로 나누는 편이 유리한지는 DB 와 환경에 따라 다르므로
+ * jpashop.query.in-chunk-size 를 바꾸기 전에 대상 환경에서 직접 실행해서 확인한다.
+ * 아직 측정한 결과는 없다. 기본값(1000)도 측정으로 정한 값이 아니다.
+ *
+ * ./gradlew jmh -Pjmh.includes=OrderItemInQueryBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OrderItemInQueryBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    int orderCount;
+
+    @Param({"100", "1000", "100000"})
+    int chunkSize;
+
+    private ConfigurableApplicationContext context;
+    private OrderQueryRepository orderQueryRepository;
+    private TransactionTemplate readOnlyTx;
+    private List<Long> orderIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("--jpashop.query.in-chunk-size=" + chunkSize);
+        BenchmarkData.seedOrders(context, orderCount, 2);
+
+        orderQueryRepository = context.getBean(OrderQueryRepository.class);
+        readOnlyTx = BenchmarkContext.readOnlyTransaction(context);
+
+        EntityManager em = context.getBean(EntityManager.class);
+        orderIds = readOnlyTx.execute(status ->
+                em.createQuery("select o.id from Order o", Long.class).getResultList());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Map<Long, List<OrderItemQueryDto>> findOrderItemMap() {
+        return readOnlyTx.execute(status -> orderQueryRepository.findOrderItemMap(orderIds));
+    }
+}
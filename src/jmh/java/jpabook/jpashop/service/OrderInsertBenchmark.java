@@ -0,0 +1,85 @@
+package jpabook.jpashop.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.BenchmarkContext;
+import jpabook.jpashop.BenchmarkData;
+import jpabook.jpashop.service.OrderCommand.OrderLine;
+
+/**
+ * 주문 INSERT 처리량(초당 주문 수)을 id 블록 크기별로 비교한다.
+ * 주문 하나는 orders, delivery, order_item 2개, order_view 를 INSERT 하고, id 가 필요한 엔티티는 4개다.
+ * blockSize=1 은 엔티티별 시퀀스를 INSERT 마다 호출한다. 시퀀스 호출 횟수는 기존 방식과 같지만,
+ * 모든 엔티티가 hibernate_sequence 하나를 공유하던 기존 매핑 자체를 재는 것은 아니다.
+ * 한 invocation 에서 ORDERS 개의 주문을 orderBatch 로 한 트랜잭션에 저장한다.
+ *
+ * ./gradlew jmh -Pjmh.includes=OrderInsertBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class OrderInsertBenchmark {
+
+    private static final int ORDERS = 100;
+
+    @Param({"1", "50", "500"})
+    int blockSize;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private long[] memberIds;
+    private long[] itemIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("--spring.jpa.properties.jpashop.id.block_size=" + blockSize);
+        BenchmarkData.seedCatalog(context, 1000, 100);
+
+        orderService = context.getBean(OrderService.class);
+
+        EntityManager em = context.getBean(EntityManager.class);
+        TransactionTemplate readOnlyTx = BenchmarkContext.readOnlyTransaction(context);
+        memberIds = readOnlyTx.execute(status -> em.createQuery("select m.id from Member m", Long.class)
+                .getResultList().stream().mapToLong(Long::longValue).toArray());
+        itemIds = readOnlyTx.execute(status -> em.createQuery("select i.id from Item i", Long.class)
+                .getResultList().stream().mapToLong(Long::longValue).toArray());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDERS)
+    public List<OrderResult> insertOrders() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<OrderCommand> commands = new ArrayList<>(ORDERS);
+        for (int i = 0; i < ORDERS; i++) {
+            commands.add(new OrderCommand(memberIds[random.nextInt(memberIds.length)], Arrays.asList(
+                    new OrderLine(itemIds[random.nextInt(itemIds.length)], 1),
+                    new OrderLine(itemIds[random.nextInt(itemIds.length)], 1))));
+        }
+        return orderService.orderBatch(commands);
+    }
+}
@@ -0,0 +1,62 @@
+package jpabook.jpashop.api;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 2차 캐시 region 별 hit/miss 통계.
+ * hibernate.generate_statistics 가 꺼져 있으면 모든 값이 0이다.
+ */
+@RestController
+@RequiredArgsConstructor
+public class CacheApiController {
+
+    private final EntityManagerFactory emf;
+
+    @GetMapping("/api/admin/cache")
+    public Result<List<CacheRegionDto>> cacheStats() {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        List<CacheRegionDto> regions = Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .map(region -> new CacheRegionDto(region, statistics.getDomainDataRegionStatistics(region)))
+                .collect(Collectors.toList());
+
+        return new Result<>(regions);
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class Result<T> {
+        private T data;
+    }
+
+    @Data
+    static class CacheRegionDto {
+        private String region;
+        private long hitCount;
+        private long missCount;
+        private long putCount;
+        private double hitRatio;
+
+        CacheRegionDto(String region, CacheRegionStatistics statistics) {
+            this.region = region;
+            this.hitCount = statistics.getHitCount();
+            this.missCount = statistics.getMissCount();
+            this.putCount = statistics.getPutCount();
+            long total = hitCount + missCount;
+            this.hitRatio = total == 0 ? 0 : (double) hitCount / total;
+        }
+    }
+}
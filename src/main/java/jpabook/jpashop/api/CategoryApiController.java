@@ -0,0 +1,52 @@
+package jpabook.jpashop.api;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import jpabook.jpashop.service.CategoryService;
+import jpabook.jpashop.service.CategoryTree;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 카테고리 트리 조회. 모두 CategoryService 의 캐시된 트리에서 읽으므로, 캐시 hit 이면 SQL 이 실행되지 않는다.
+ */
+@RestController
+@RequiredArgsConstructor
+public class CategoryApiController {
+
+    private final CategoryService categoryService;
+
+    /** 전체 트리. 최상위 카테고리부터 하위 카테고리를 중첩해서 반환한다. */
+    @GetMapping("/api/categories")
+    public Result<List<CategoryTree.Node>> categories() {
+        return new Result<>(categoryService.getTree().getRoots());
+    }
+
+    /** 최상위 카테고리부터 해당 카테고리까지의 경로 */
+    @GetMapping("/api/categories/{id}/breadcrumbs")
+    public Result<List<BreadcrumbDto>> breadcrumbs(@PathVariable("id") Long id) {
+        List<BreadcrumbDto> collect = categoryService.getTree().breadcrumbs(id).stream()
+                .map(n -> new BreadcrumbDto(n.getId(), n.getName()))
+                .collect(Collectors.toList());
+        return new Result<>(collect);
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class Result<T> {
+        private T data;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class BreadcrumbDto {
+        private Long categoryId;
+        private String name;
+    }
+}
@@ -0,0 +1,16 @@
+package jpabook.jpashop.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 키셋(커서) 페이징 응답.
+ * 다음 페이지는 nextCursor 를 그대로 다시 넘긴다. 마지막 페이지면 nextCursor 는 null.
+ * 커서의 형식은 API 마다 다르므로(마지막 id, 인코딩된 위치 등) 클라이언트는 해석하지 않고 문자열로 다룬다.
+ */
+@Data
+@AllArgsConstructor
+public class CursorResult<T> {
+    private T data;
+    private String nextCursor;
+}
@@ -0,0 +1,169 @@
+package jpabook.jpashop.api;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CollectionStatistics;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import jpabook.jpashop.monitor.HibernateStatisticsMetrics;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Hibernate 통계. 애플리케이션 시작 후 누적 값이다.
+ * 같은 값이 Micrometer 지표로도 등록되어 있다. (/actuator/metrics 의 hibernate.*, jpashop.hibernate.*)
+ * 2차 캐시 region 별 통계는 /api/admin/cache 에서 본다.
+ */
+@RestController
+@RequiredArgsConstructor
+public class HibernateStatsApiController {
+
+    private final EntityManagerFactory emf;
+    private final HibernateStatisticsMetrics metrics;
+
+    @GetMapping("/api/admin/hibernate")
+    public Result<HibernateStatsDto> hibernateStats(@RequestParam(value = "queryLimit", defaultValue = "20") int queryLimit) {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        return new Result<>(new HibernateStatsDto(statistics, metrics, queryLimit));
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class Result<T> {
+        private T data;
+    }
+
+    @Data
+    static class HibernateStatsDto {
+        private long sessionOpenCount;
+        private long transactionCount;
+        private long prepareStatementCount;
+        private long flushCount;
+        private long entityLoadCount;
+        private long entityFetchCount;
+        private long collectionLoadCount;
+        private long collectionFetchCount;
+        private long queryExecutionCount;
+        private long queryExecutionMaxTime;
+        private String queryExecutionMaxTimeQueryString;
+        private double secondLevelCacheHitRatio;
+        private FlushDto flush;
+        private FlushDto autoFlush;
+        private List<EntityDto> entities;
+        private List<CollectionDto> collections;
+        private List<QueryDto> slowestQueries; // 최대 실행 시간 순
+
+        HibernateStatsDto(Statistics statistics, HibernateStatisticsMetrics metrics, int queryLimit) {
+            this.sessionOpenCount = statistics.getSessionOpenCount();
+            this.transactionCount = statistics.getTransactionCount();
+            this.prepareStatementCount = statistics.getPrepareStatementCount();
+            this.flushCount = statistics.getFlushCount();
+            this.entityLoadCount = statistics.getEntityLoadCount();
+            this.entityFetchCount = statistics.getEntityFetchCount();
+            this.collectionLoadCount = statistics.getCollectionLoadCount();
+            this.collectionFetchCount = statistics.getCollectionFetchCount();
+            this.queryExecutionCount = statistics.getQueryExecutionCount();
+            this.queryExecutionMaxTime = statistics.getQueryExecutionMaxTime();
+            this.queryExecutionMaxTimeQueryString = statistics.getQueryExecutionMaxTimeQueryString();
+            long cacheRequests = statistics.getSecondLevelCacheHitCount() + statistics.getSecondLevelCacheMissCount();
+            this.secondLevelCacheHitRatio = cacheRequests == 0 ? 0 : (double) statistics.getSecondLevelCacheHitCount() / cacheRequests;
+            this.flush = new FlushDto(metrics.getFlushEntities());
+            this.autoFlush = new FlushDto(metrics.getAutoFlushEntities());
+            this.entities = Arrays.stream(statistics.getEntityNames())
+                    .map(name -> new EntityDto(name, statistics.getEntityStatistics(name)))
+                    .sorted(Comparator.comparingLong(e -> -(e.getLoadCount() + e.getFetchCount())))
+                    .collect(Collectors.toList());
+            this.collections = Arrays.stream(statistics.getCollectionRoleNames())
+                    .map(role -> new CollectionDto(role, statistics.getCollectionStatistics(role)))
+                    .sorted(Comparator.comparingLong(c -> -(c.getLoadCount() + c.getFetchCount())))
+                    .collect(Collectors.toList());
+            this.slowestQueries = Arrays.stream(statistics.getQueries())
+                    .map(query -> new QueryDto(query, statistics.getQueryStatistics(query)))
+                    .sorted(Comparator.comparingLong(q -> -q.getExecutionMaxTime()))
+                    .limit(queryLimit)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * flush 시점에 영속성 컨텍스트가 관리하던 엔티티 수.
+     */
+    @Data
+    static class FlushDto {
+        private long count;
+        private double meanManagedEntities;
+        private double maxManagedEntities;
+
+        FlushDto(DistributionSummary summary) {
+            this.count = summary.count();
+            this.meanManagedEntities = summary.mean();
+            this.maxManagedEntities = summary.max();
+        }
+    }
+
+    @Data
+    static class EntityDto {
+        private String entity;
+        private long loadCount;
+        private long fetchCount; // 지연 로딩 등으로 따로 조회된 수
+        private long insertCount;
+        private long updateCount;
+        private long deleteCount;
+        private long cacheHitCount;
+        private long cacheMissCount;
+
+        EntityDto(String entity, EntityStatistics statistics) {
+            this.entity = entity.substring(entity.lastIndexOf('.') + 1);
+            this.loadCount = statistics.getLoadCount();
+            this.fetchCount = statistics.getFetchCount();
+            this.insertCount = statistics.getInsertCount();
+            this.updateCount = statistics.getUpdateCount();
+            this.deleteCount = statistics.getDeleteCount();
+            this.cacheHitCount = statistics.getCacheHitCount();
+            this.cacheMissCount = statistics.getCacheMissCount();
+        }
+    }
+
+    @Data
+    static class CollectionDto {
+        private String role;
+        private long loadCount;
+        private long fetchCount;
+
+        CollectionDto(String role, CollectionStatistics statistics) {
+            this.role = role.substring(role.lastIndexOf('.', role.lastIndexOf('.') - 1) + 1);
+            this.loadCount = statistics.getLoadCount();
+            this.fetchCount = statistics.getFetchCount();
+        }
+    }
+
+    @Data
+    static class QueryDto {
+        private String query;
+        private long executionCount;
+        private long executionRowCount;
+        private long executionAvgTime;
+        private long executionMaxTime;
+
+        QueryDto(String query, QueryStatistics statistics) {
+            this.query = query;
+            this.executionCount = statistics.getExecutionCount();
+            this.executionRowCount = statistics.getExecutionRowCount();
+            this.executionAvgTime = statistics.getExecutionAvgTime();
+            this.executionMaxTime = statistics.getExecutionMaxTime();
+        }
+    }
+}
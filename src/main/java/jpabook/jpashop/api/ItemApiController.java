@@ -0,0 +1,104 @@
+package jpabook.jpashop.api;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hibernate.Hibernate;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.item.query.ItemQueryDto;
+import jpabook.jpashop.repository.item.query.ItemQueryRepository;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequiredArgsConstructor
+public class ItemApiController {
+
+    private static final int MAX_LIMIT = 1000;
+    private static final int LOOKUP_MAX_LIMIT = 50;
+
+    private final ItemRepository itemRepository;
+    private final ItemQueryRepository itemQueryRepository;
+
+    /**
+     * 카테고리 서브트리(하위 카테고리 포함)의 상품. 키셋 페이징.
+     * Query : 1번. 클로저 테이블 + category_item 인덱스로 서브트리 상품을 한 번에 조회한다.
+     * type 으로 상품 종류(Book, Album, Movie)를 거를 수 있다. 알 수 없는 type 은 400.
+     * 다음 페이지는 응답의 nextCursor 를 after 로 넘긴다. 마지막 페이지면 nextCursor 는 null.
+     */
+    @GetMapping("/api/categories/{categoryId}/items")
+    public CursorResult<List<ItemDto>> categoryItems(
+            @PathVariable("categoryId") Long categoryId,
+            @RequestParam(value = "type", required = false) String type,
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_LIMIT));
+        List<Item> items;
+        try {
+            items = itemRepository.findAllInCategory(categoryId, type, after, pageSize);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        List<ItemDto> result = items.stream().map(i -> new ItemDto(i)).collect(Collectors.toList());
+
+        String nextCursor = items.size() == pageSize ? String.valueOf(items.get(items.size() - 1).getId()) : null;
+        return new CursorResult<>(result, nextCursor);
+    }
+
+    /**
+     * 상품 목록. 키셋 페이징 + DTO 직접 조회
+     * 목록에 필요한 컬럼(id, 이름, 가격, 재고)만 조회하고 엔티티는 만들지 않는다.
+     */
+    @GetMapping("/api/items")
+    public CursorResult<List<ItemQueryDto>> items(
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_LIMIT));
+        List<ItemQueryDto> items = itemQueryRepository.findItems(after, pageSize);
+
+        String nextCursor = items.size() == pageSize ? String.valueOf(items.get(items.size() - 1).getItemId()) : null;
+        return new CursorResult<>(items, nextCursor);
+    }
+
+    /**
+     * 상품명 앞부분으로 검색. 주문 화면의 상품 검색에 사용한다.
+     */
+    @GetMapping("/api/items/lookup")
+    public Result<List<ItemQueryDto>> lookup(
+            @RequestParam("q") String q,
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return new Result<>(itemQueryRepository.findByNamePrefix(q, Math.max(1, Math.min(limit, LOOKUP_MAX_LIMIT))));
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class Result<T> {
+        private T data;
+    }
+
+    @Data
+    static class ItemDto {
+        private Long itemId;
+        private String type;
+        private String name;
+        private int price;
+        private int stockQuantity;
+
+        public ItemDto(Item item) {
+            itemId = item.getId();
+            type = Hibernate.getClass(item).getSimpleName();
+            name = item.getName();
+            price = item.getPrice();
+            stockQuantity = item.getStockQuantity();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package jpabook.jpashop.api;
 
 import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.repository.member.query.MemberQueryDto;
+import jpabook.jpashop.repository.member.query.MemberQueryRepository;
 import jpabook.jpashop.service.MemberService;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -16,7 +18,10 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class MemberApiController {
 
+    private static final int MAX_LIMIT = 1000;
+
     private final MemberService memberService;
+    private final MemberQueryRepository memberQueryRepository;
 
     @GetMapping("/api/v1/members")
     public List<Member> membersV1() {
@@ -31,6 +36,22 @@ public class MemberApiController {
         return new Result(collect);
     }
 
+    /**
+     * v3. 키셋 페이징 + DTO 직접 조회
+     * 회원 엔티티를 만들지 않고 id, name 만 조회한다. 한 번에 최대 MAX_LIMIT 건.
+     * 다음 페이지는 응답의 nextCursor 를 after 로 넘긴다. 마지막 페이지면 nextCursor 는 null.
+     */
+    @GetMapping("/api/v3/members")
+    public CursorResult<List<MemberQueryDto>> membersV3(
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_LIMIT));
+        List<MemberQueryDto> members = memberQueryRepository.findMembers(after, pageSize);
+
+        String nextCursor = members.size() == pageSize ? String.valueOf(members.get(members.size() - 1).getMemberId()) : null;
+        return new CursorResult<>(members, nextCursor);
+    }
+
     @Data
     @AllArgsConstructor
     static class Result<T> {
@@ -1,21 +1,63 @@
 package jpabook.jpashop.api;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
+import javax.persistence.Tuple;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.Size;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 import jpabook.jpashop.domain.Address;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderItem;
 import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.OrderView;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.OrderCursor;
+import jpabook.jpashop.repository.OrderFetchPlan;
+import jpabook.jpashop.repository.OrderFetchPlan.Expand;
+import jpabook.jpashop.repository.OrderFetchPlan.Field;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
 import jpabook.jpashop.repository.order.query.OrderQueryDto;
 import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import jpabook.jpashop.repository.order.view.OrderViewRepository;
+import jpabook.jpashop.service.BulkCancelResult;
+import jpabook.jpashop.service.OrderCommand;
+import jpabook.jpashop.service.OrderCommand.OrderLine;
+import jpabook.jpashop.service.OrderIntake;
+import jpabook.jpashop.service.OrderResult;
+import jpabook.jpashop.service.OrderService;
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 
@@ -25,6 +67,16 @@ public class OrderApiController {
     
     private final OrderRepository orderRepository;
     private final OrderQueryRepository orderQueryRepository;
+    private final OrderViewRepository orderViewRepository;
+    private final OrderService orderService;
+    private final ObjectProvider<OrderIntake> orderIntake;
+    private final ObjectMapper objectMapper;
+
+    private static final String NDJSON = "application/x-ndjson";
+    // 키셋 페이징 API 의 최대 limit. default_batch_fetch_size(500) 이하로 둬야 한 페이지의 컬렉션을 IN 쿼리 한 번에 읽는다.
+    private static final int MAX_LIMIT = 500;
+    // export 의 최대 chunk 크기. chunk 하나를 메모리에 모았다가 쓰므로 너무 크면 스트리밍하는 의미가 없다.
+    private static final int MAX_EXPORT_CHUNK_SIZE = 1000;
 
     /**
      * v1. 엔티티 직접 노출
@@ -101,6 +153,48 @@ public class OrderApiController {
         return result;
     }
 
+    /**
+     * v3.2. 엔티티를 DTO로 변환 + 키셋(커서) 페이징
+     * - v3.1과 같이 XtoOne 관계는 페치조인, 컬렉션은 batch fetch size로 조회한다.
+     * - offset 대신 마지막으로 조회한 위치 다음부터 조회하므로, 페이지가 깊어져도 버리는 row가 없다.
+     * - after: 마지막 order_id 기준으로 조회 (order_id 순)
+     * - cursor: 이전 응답의 nextCursor 기준으로 조회 (orderDate, order_id 순). after보다 우선한다.
+     * - nextCursor가 null이면 마지막 페이지.
+     * - 잘못된 cursor는 400.
+     */
+    @GetMapping("/api/v3.2/orders")
+    public CursorResult<List<OrderDto>> ordersV3_cursor(
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        limit = pageSize(limit);
+        OrderCursor position = null;
+        if (cursor != null) {
+            try {
+                position = OrderCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+            }
+        }
+
+        List<Order> orders;
+        boolean byCursor = cursor != null || after == null;
+        if (byCursor) {
+            orders = orderRepository.findAllWithMemberDelivery(position, limit);
+        } else {
+            orders = orderRepository.findAllWithMemberDeliveryAfter(after, limit);
+        }
+
+        List<OrderDto> result = orders.stream().map(o -> new OrderDto(o)).collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (orders.size() == limit) {
+            Order last = orders.get(orders.size() - 1);
+            nextCursor = byCursor ? OrderCursor.of(last).encode() : String.valueOf(last.getId());
+        }
+        return new CursorResult<>(result, nextCursor);
+    }
+
     /**
      * v4. JPA에서 DTO 직접 조회
      * Query: 루트 1번. 컬렉션 N번 실행됨.
@@ -121,7 +215,273 @@ public class OrderApiController {
         return orderQueryRepository.findAllByDto_optimization();
     }
 
+    /**
+     * v5.1. JPA에서 DTO 직접 조회 - NDJSON 스트리밍 export
+     * Query : chunk마다 루트는 커서에서 이어서 읽고, 컬렉션 1번.
+     * 한 줄에 주문 하나씩 응답에 바로 쓰고 chunk마다 flush 하므로, 주문이 몇 건이든 힙 사용량이 일정하다.
+     * chunkSize 는 [1, MAX_EXPORT_CHUNK_SIZE] 로 맞춘다.
+     */
+    @GetMapping(value = "/api/v5/orders/export", produces = NDJSON)
+    public void ordersV5_export(@RequestParam(value = "chunkSize", defaultValue = "1000") int chunkSize,
+            HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        OutputStream out = response.getOutputStream();
+
+        orderQueryRepository.streamAllByDto(Math.max(1, Math.min(chunkSize, MAX_EXPORT_CHUNK_SIZE)), chunk -> {
+            try {
+                for (OrderQueryDto order : chunk) {
+                    out.write(objectMapper.writeValueAsBytes(order));
+                    out.write('\n');
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+
+    /**
+     * v6. 조회 전용 모델(order_view)에서 조회
+     * Query : 1번. 조인 없이 order_view 단일 테이블 인덱스 스캔.
+     * 주문/취소 시 OrderService 가 같은 트랜잭션에서 order_view 를 갱신한다. 이전에 저장된 주문은 OrderViewBackfill 이 채운다.
+     * 주문상품 목록은 없고, 주문 단위 요약(총 금액, 상품 수)만 제공한다.
+     */
+    @GetMapping("/api/v6/orders")
+    public CursorResult<List<OrderViewDto>> ordersV6(
+            @RequestParam(value = "status", required = false) OrderStatus status,
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        limit = pageSize(limit);
+        List<OrderView> views = orderViewRepository.findAll(status, after, limit);
+        List<OrderViewDto> result = views.stream().map(v -> new OrderViewDto(v)).collect(Collectors.toList());
+
+        String nextCursor = views.size() == limit ? String.valueOf(views.get(views.size() - 1).getId()) : null;
+        return new CursorResult<>(result, nextCursor);
+    }
+
+    /**
+     * v7. 클라이언트가 필요한 필드와 연관관계만 골라서 조회 (order_id 순 키셋 페이징)
+     * - fields : orderDate, orderStatus, totalPrice, itemCount 중 쉼표로 구분. 없으면 모두. orderId 는 항상 포함.
+     * - expand : member(name), delivery(address), items(orderItems) 중 쉼표로 구분. 없으면 연관관계를 읽지 않는다.
+     * Query
+     * - expand 없음 : 고른 컬럼만 SELECT 1번. 엔티티를 만들지 않는다.
+     * - member, delivery : 엔티티 그래프로 주문과 같은 쿼리에서 조인. 고르지 않은 쪽은 조인하지 않는다.
+     * - items : 주문상품 IN 쿼리 1번(default_batch_fetch_size). 상품은 2차 캐시에 없을 때만 IN 쿼리 1번.
+     *   limit 은 [1, MAX_LIMIT] 로 맞추므로 한 페이지의 주문 수가 default_batch_fetch_size 를 넘지 않는다.
+     * 응답에는 고른 항목만 들어간다.
+     */
+    @GetMapping("/api/v7/orders")
+    public CursorResult<List<OrderFieldsDto>> ordersV7(
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "expand", required = false) String expand,
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        int pageSize = pageSize(limit);
+        OrderFetchPlan plan;
+        try {
+            plan = OrderFetchPlan.parse(fields, expand);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+
+        List<OrderFieldsDto> result;
+        if (plan.getExpand().isEmpty()) {
+            result = orderRepository.findFields(plan, after, pageSize).stream()
+                    .map(t -> new OrderFieldsDto(t, plan))
+                    .collect(Collectors.toList());
+        } else {
+            result = orderRepository.findAllWithGraph(plan, after, pageSize).stream()
+                    .map(o -> new OrderFieldsDto(o, plan))
+                    .collect(Collectors.toList());
+        }
+
+        String nextCursor = result.size() == pageSize ? String.valueOf(result.get(result.size() - 1).getOrderId()) : null;
+        return new CursorResult<>(result, nextCursor);
+    }
+
+    /**
+     * 여러 건 주문을 한 번에 접수한다.
+     * 회원/상품 조회는 IN 쿼리 한 번씩, 주문 INSERT 는 JDBC 배치로 묶인다.
+     * 주문별로 성공/실패를 요청 순서대로 반환한다. 한 주문이 실패해도 나머지 주문은 저장된다.
+     * 최대 OrderService.MAX_BATCH_ORDERS 건, 넘으면 400.
+     */
+    @PostMapping("/api/orders/batch")
+    public Result<List<BatchOrderResponse>> orderBatch(@RequestBody @Valid BatchOrderRequest request) {
+        List<OrderCommand> commands = request.getOrders().stream()
+                .map(o -> new OrderCommand(o.getMemberId(), o.getItems().stream()
+                        .map(i -> new OrderLine(i.getItemId(), i.getCount()))
+                        .collect(Collectors.toList())))
+                .collect(Collectors.toList());
+
+        List<OrderResult> results = orderService.orderBatch(commands);
+
+        List<BatchOrderResponse> collect = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            OrderResult r = results.get(i);
+            collect.add(new BatchOrderResponse(i, r.getOrderId(), r.getError()));
+        }
+        return new Result<>(collect);
+    }
+
+    /**
+     * 주문 일괄 취소.
+     * - orderIds 가 있으면 해당 주문만 취소한다. 빈 목록이면 아무것도 하지 않는다. 최대 OrderService.MAX_BULK_CANCEL 건, 넘으면 400.
+     * - orderIds 가 없으면 검색 조건(memberName, minTotalPrice, maxTotalPrice)에 맞는 주문을 최대 OrderService.MAX_BULK_CANCEL 건 취소한다.
+     *   조건이 하나도 없으면 모든 주문이 대상이 되므로 all=true 를 함께 보내야 한다. 아니면 400.
+     *   hasMore 가 true 면 조건에 맞는 주문이 더 남아 있으므로 같은 요청을 반복한다.
+     * 취소하지 못한 주문은 사유와 함께 응답한다.
+     */
+    @PostMapping("/api/orders/cancel")
+    public Result<BulkCancelResponse> cancelOrders(@RequestBody @Valid BulkCancelRequest request) {
+        BulkCancelResult result;
+        if (request.getOrderIds() != null) {
+            result = orderService.cancelOrders(request.getOrderIds());
+        } else {
+            if (!request.hasFilter() && !request.isAll()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "orderIds 나 검색 조건을 지정해야 합니다. 모든 주문을 취소하려면 all=true 를 보내야 합니다.");
+            }
+            OrderSearch orderSearch = new OrderSearch();
+            orderSearch.setMemberName(request.getMemberName());
+            orderSearch.setMinTotalPrice(request.getMinTotalPrice());
+            orderSearch.setMaxTotalPrice(request.getMaxTotalPrice());
+            result = orderService.cancelOrders(orderSearch);
+        }
+        return new Result<>(new BulkCancelResponse(result));
+    }
+
+    /**
+     * 비동기 주문 접수. 주문을 큐에 넣고, OrderIntake 가 여러 주문을 모아 한 트랜잭션으로 커밋한 뒤 응답한다.
+     * jpashop.order.intake.enabled=true 일 때만 사용할 수 있다. 대기열이 가득 차면 503. (orderRejected)
+     * 재고가 부족하면 409, 회원/상품이 없거나 수량이 잘못되면 400.
+     */
+    @PostMapping("/api/orders/async")
+    public CompletableFuture<CreateOrderResponse> orderAsync(@RequestBody @Valid OrderRequest request) {
+        OrderIntake intake = orderIntake.getIfAvailable();
+        if (intake == null) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "비동기 주문 접수가 비활성화되어 있습니다.");
+        }
+        OrderCommand command = new OrderCommand(request.getMemberId(), request.getItems().stream()
+                .map(i -> new OrderLine(i.getItemId(), i.getCount()))
+                .collect(Collectors.toList()));
+        return intake.submit(command).handle((orderId, e) -> {
+            if (e != null) {
+                throw orderFailure(e);
+            }
+            return new CreateOrderResponse(orderId);
+        });
+    }
+
+    private static RuntimeException orderFailure(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof NotEnoughStockException) {
+            return new ResponseStatusException(HttpStatus.CONFLICT, cause.getMessage(), cause);
+        }
+        if (cause instanceof IllegalArgumentException) {
+            return new ResponseStatusException(HttpStatus.BAD_REQUEST, cause.getMessage(), cause);
+        }
+        return cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+    }
+
+    /*
+     * limit 을 [1, MAX_LIMIT] 로 맞춘다. 0 이하면 빈 페이지에서 다음 커서를 만들다가 실패하고, 너무 크면 한 번에 테이블 전체를 읽는다.
+     * */
+    private static int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    /**
+     * 비동기 주문 접수 대기열이 가득 찼거나 접수가 종료 중이면 503. 클라이언트는 Retry-After 뒤에 다시 시도한다.
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Result<String>> orderRejected(RejectedExecutionException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new Result<>(e.getMessage()));
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class CreateOrderResponse {
+        private Long orderId;
+    }
+
+    @Data
+    static class BatchOrderRequest {
+        @NotEmpty
+        @Size(max = OrderService.MAX_BATCH_ORDERS)
+        @Valid
+        private List<OrderRequest> orders;
+    }
+
+    @Data
+    static class OrderRequest {
+        @NotNull
+        private Long memberId;
+        @NotEmpty
+        @Valid
+        private List<OrderLineRequest> items;
+    }
+
+    @Data
+    static class OrderLineRequest {
+        @NotNull
+        private Long itemId;
+        @Positive
+        private int count;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class BatchOrderResponse {
+        private int index;
+        private Long orderId;
+        private String error;
+    }
+
+    @Data
+    static class BulkCancelRequest {
+        @Size(max = OrderService.MAX_BULK_CANCEL)
+        private List<Long> orderIds;
+        private String memberName;
+        private Integer minTotalPrice;
+        private Integer maxTotalPrice;
+        private boolean all; // 검색 조건 없이 모든 주문을 취소할 때 true
+
+        boolean hasFilter() {
+            return StringUtils.hasText(memberName) || minTotalPrice != null || maxTotalPrice != null;
+        }
+    }
+
+    @Data
+    static class BulkCancelResponse {
+        private List<Long> cancelled;
+        private List<CancelFailureDto> failures;
+        private boolean hasMore; // 검색 조건으로 취소할 때 최대 건수를 넘어서 남은 주문이 있는지
+
+        BulkCancelResponse(BulkCancelResult result) {
+            this.cancelled = result.getCancelled();
+            this.hasMore = result.isHasMore();
+            this.failures = result.getFailures().stream()
+                    .map(f -> new CancelFailureDto(f.getOrderId(), f.getReason()))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class CancelFailureDto {
+        private Long orderId;
+        private String reason;
+    }
 
+    @Data
+    @AllArgsConstructor
+    static class Result<T> {
+        private T data;
+    }
 
     @Data
     static class OrderDto{
@@ -142,6 +502,64 @@ public class OrderApiController {
         }
     }
 
+    /**
+     * 고르지 않은 항목은 null 로 두고 응답에서 뺀다.
+     */
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    static class OrderFieldsDto{
+        private Long orderId;
+        private LocalDateTime orderDate;
+        private OrderStatus orderStatus;
+        private Integer totalPrice;
+        private Integer itemCount;
+        private String name;
+        private Address address;
+        private List<OrderItemDto> orderItems;
+
+        public OrderFieldsDto(Tuple tuple, OrderFetchPlan plan){
+            orderId = tuple.get("orderId", Long.class);
+            orderDate = plan.has(Field.ORDER_DATE) ? tuple.get("orderDate", LocalDateTime.class) : null;
+            orderStatus = plan.has(Field.ORDER_STATUS) ? tuple.get("orderStatus", OrderStatus.class) : null;
+            totalPrice = plan.has(Field.TOTAL_PRICE) ? tuple.get("totalPrice", Integer.class) : null;
+            itemCount = plan.has(Field.ITEM_COUNT) ? tuple.get("itemCount", Integer.class) : null;
+        }
+
+        public OrderFieldsDto(Order order, OrderFetchPlan plan){
+            orderId = order.getId();
+            orderDate = plan.has(Field.ORDER_DATE) ? order.getOrderDate() : null;
+            orderStatus = plan.has(Field.ORDER_STATUS) ? order.getStatus() : null;
+            totalPrice = plan.has(Field.TOTAL_PRICE) ? order.getTotalPrice() : null;
+            itemCount = plan.has(Field.ITEM_COUNT) ? order.getItemCount() : null;
+            name = plan.has(Expand.MEMBER) ? order.getMember().getName() : null;
+            address = plan.has(Expand.DELIVERY) ? order.getDelivery().getAddress() : null;
+            orderItems = plan.has(Expand.ITEMS)
+                    ? order.getOrderItems().stream().map(orderItem -> new OrderItemDto(orderItem)).collect(Collectors.toList())
+                    : null;
+        }
+    }
+
+    @Data
+    static class OrderViewDto{
+        private Long orderId;
+        private String name;
+        private LocalDateTime orderDate;
+        private OrderStatus orderStatus;
+        private Address address;
+        private int totalPrice;
+        private int itemCount;
+
+        public OrderViewDto(OrderView orderView){
+            orderId = orderView.getId();
+            name = orderView.getMemberName();
+            orderDate = orderView.getOrderDate();
+            orderStatus = orderView.getStatus();
+            address = orderView.getAddress();
+            totalPrice = orderView.getTotalPrice();
+            itemCount = orderView.getItemCount();
+        }
+    }
+
     @Data
     static class OrderItemDto{
         private String itemName;
@@ -91,6 +91,8 @@ public class OrderSimpleApiController {
         private LocalDateTime orderDate;
         private OrderStatus orderStatus;
         private Address address;
+        private int totalPrice;
+        private int itemCount;
 
         public SimpleOrderDto(Order order){
             orderId = order.getId();
@@ -98,6 +100,8 @@ public class OrderSimpleApiController {
             orderDate = order.getOrderDate();
             orderStatus = order.getStatus();
             address = order.getDelivery().getAddress(); // LAZY 초기화. 미리 fetch 하지 않았을 경우 지연로딩 조회 N번
+            totalPrice = order.getTotalPrice(); // orders 컬럼. order_item 을 읽지 않는다
+            itemCount = order.getItemCount();
         }
     }
     
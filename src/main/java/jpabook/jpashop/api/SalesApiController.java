@@ -0,0 +1,60 @@
+package jpabook.jpashop.api;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.sales.SalesDailyDto;
+import jpabook.jpashop.repository.sales.SalesItemDto;
+import jpabook.jpashop.service.SalesService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 매출 리포트. 주문 테이블이 아니라 집계 테이블(sales_daily, sales_item_daily)에서 읽는다.
+ */
+@RestController
+@RequiredArgsConstructor
+public class SalesApiController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final SalesService salesService;
+
+    /** 일별/주문상태별 주문 수, 매출 */
+    @GetMapping("/api/sales/daily")
+    public Result<List<SalesDailyDto>> daily(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return new Result<>(salesService.findDaily(from, to));
+    }
+
+    /** 기간 내 상품별 판매 수량, 매출. 매출 순. status 기본값은 ORDER(취소되지 않은 주문) */
+    @GetMapping("/api/sales/items")
+    public Result<List<SalesItemDto>> items(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "status", defaultValue = "ORDER") OrderStatus status,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        return new Result<>(salesService.findTopItems(from, to, status, Math.max(1, Math.min(limit, MAX_LIMIT))));
+    }
+
+    /** 집계 테이블 전체 재생성 */
+    @PostMapping("/api/admin/sales/rebuild")
+    public void rebuild() {
+        salesService.rebuild();
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class Result<T> {
+        private T data;
+    }
+}
@@ -0,0 +1,134 @@
+package jpabook.jpashop.api;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import jpabook.jpashop.monitor.SqlProfile;
+import jpabook.jpashop.monitor.SqlProfile.ShapeStats;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 엔드포인트별, SQL 모양별 실행/fetch 시간 분포. (SqlProfile)
+ * 시간은 모두 밀리초이고, 총 시간(실행 + fetch)이 큰 순서로 정렬한다.
+ * 배포 전후로 reset 하고 같은 부하를 주면 느려진 엔드포인트와 쿼리를 비교할 수 있다.
+ */
+@RestController
+@RequiredArgsConstructor
+public class SqlApiController {
+
+    private final SqlProfile sqlProfile;
+
+    @GetMapping("/api/admin/sql/endpoints")
+    public Result<List<EndpointDto>> endpoints() {
+        Map<String, List<ShapeStats>> byEndpoint = sqlProfile.getShapes().stream()
+                .collect(Collectors.groupingBy(ShapeStats::getEndpoint, LinkedHashMap::new, Collectors.toList()));
+
+        List<EndpointDto> endpoints = byEndpoint.entrySet().stream()
+                .map(e -> new EndpointDto(e.getKey(), e.getValue()))
+                .sorted(Comparator.comparingDouble(EndpointDto::getTotalMs).reversed())
+                .collect(Collectors.toList());
+        return new Result<>(endpoints);
+    }
+
+    @GetMapping("/api/admin/sql/shapes")
+    public Result<List<ShapeDto>> shapes(
+            @RequestParam(value = "endpoint", required = false) String endpoint,
+            @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        List<ShapeDto> shapes = sqlProfile.getShapes().stream()
+                .filter(s -> endpoint == null || endpoint.equals(s.getEndpoint()))
+                .map(ShapeDto::new)
+                .sorted(Comparator.comparingDouble(ShapeDto::getTotalMs).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+        return new Result<>(shapes);
+    }
+
+    @PostMapping("/api/admin/sql/reset")
+    public void reset() {
+        sqlProfile.reset();
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class Result<T> {
+        private T data;
+    }
+
+    /**
+     * 한 분포의 요약. 분포는 마이크로초로 기록되어 있다.
+     */
+    @Data
+    static class LatencyDto {
+        private long count;
+        private double p50Ms;
+        private double p99Ms;
+        private double maxMs;
+        private double totalMs;
+
+        LatencyDto(Histogram micros) {
+            this.count = micros.getTotalCount();
+            this.p50Ms = micros.getValueAtPercentile(50) / 1000.0;
+            this.p99Ms = micros.getValueAtPercentile(99) / 1000.0;
+            this.maxMs = micros.getMaxValue() / 1000.0;
+            this.totalMs = micros.getMean() * count / 1000.0;
+        }
+    }
+
+    @Data
+    static class ShapeDto {
+        private String endpoint;
+        private String sql;
+        private long rows;
+        private LatencyDto execute;
+        private LatencyDto fetch;
+        private double totalMs;
+
+        ShapeDto(ShapeStats stats) {
+            this.endpoint = stats.getEndpoint();
+            this.sql = stats.getShape();
+            this.rows = stats.getRows();
+            this.execute = new LatencyDto(stats.getExecuteMicros());
+            this.fetch = new LatencyDto(stats.getFetchMicros());
+            this.totalMs = execute.getTotalMs() + fetch.getTotalMs();
+        }
+    }
+
+    /**
+     * 엔드포인트 하나에서 실행된 모든 SQL 을 합친 분포.
+     */
+    @Data
+    static class EndpointDto {
+        private String endpoint;
+        private int shapes;
+        private long rows;
+        private LatencyDto execute;
+        private LatencyDto fetch;
+        private double totalMs;
+
+        EndpointDto(String endpoint, List<ShapeStats> stats) {
+            Histogram executeMicros = new Histogram(2);
+            Histogram fetchMicros = new Histogram(2);
+            for (ShapeStats s : stats) {
+                executeMicros.add(s.getExecuteMicros());
+                fetchMicros.add(s.getFetchMicros());
+                rows += s.getRows();
+            }
+            this.endpoint = endpoint;
+            this.shapes = stats.size();
+            this.execute = new LatencyDto(executeMicros);
+            this.fetch = new LatencyDto(fetchMicros);
+            this.totalMs = execute.getTotalMs() + fetch.getTotalMs();
+        }
+    }
+}
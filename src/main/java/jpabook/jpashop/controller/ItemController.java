@@ -1,7 +1,7 @@
 package jpabook.jpashop.controller;
 
 import jpabook.jpashop.domain.item.Book;
-import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.item.query.ItemQueryDto;
 import jpabook.jpashop.service.ItemService;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -11,6 +11,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
 
@@ -18,6 +19,8 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ItemController {
 
+    private static final int PAGE_SIZE = 20;
+
     private final ItemService itemService;
 
     @GetMapping("/items/new")
@@ -39,10 +42,14 @@ public class ItemController {
         return "redirect:/items";
     }
 
+    /*
+     * 상품 목록. 전체 상품 대신 PAGE_SIZE 건씩 키셋 페이징으로 보여준다.
+     * */
     @GetMapping("/items")
-    public String list(Model model) {
-        List<Item> items = itemService.findItems();
+    public String list(@RequestParam(value = "after", required = false) Long after, Model model) {
+        List<ItemQueryDto> items = itemService.findItemPage(after, PAGE_SIZE);
         model.addAttribute("items", items);
+        model.addAttribute("nextCursor", items.size() == PAGE_SIZE ? items.get(items.size() - 1).getItemId() : null);
         return "items/itemList";
     }
 
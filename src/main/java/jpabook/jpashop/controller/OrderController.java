@@ -1,10 +1,8 @@
 package jpabook.jpashop.controller;
 
 import jpabook.jpashop.domain.Member;
-import jpabook.jpashop.domain.Order;
-import jpabook.jpashop.domain.item.Item;
 import jpabook.jpashop.repository.OrderSearch;
-import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.repository.order.query.OrderListDto;
 import jpabook.jpashop.service.MemberService;
 import jpabook.jpashop.service.OrderService;
 import lombok.RequiredArgsConstructor;
@@ -18,17 +16,20 @@ import java.util.List;
 @RequiredArgsConstructor
 public class OrderController {
 
+    private static final int MAX_PAGE = 500;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final OrderService orderService;
     private final MemberService memberService;
-    private final ItemService itemService;
 
+    /*
+     * 주문 화면. 상품은 전체 목록을 내려주지 않고, 화면에서 상품명으로 검색한다. (/api/items/lookup)
+     * */
     @GetMapping("/order")
     public String createForm(Model model) {
         List<Member> members = memberService.findMembers();
-        List<Item> items = itemService.findItems();
 
         model.addAttribute("members", members);
-        model.addAttribute("items", items);
 
         return "order/orderForm";
     }
@@ -42,11 +43,27 @@ public class OrderController {
         return "redirect:/orders";
     }
 
+    /*
+     * 주문 목록. 화면 전용 DTO 로 조회하므로 렌더링 중에 지연 로딩이 일어나지 않는다. (주문 1번, 대표상품 1번)
+     * offset 페이징이므로 뒤 페이지로 갈수록 느려진다. 화면에서는 최근 주문 위주로 보므로 page 수를 MAX_PAGE 로 제한한다.
+     * */
     @GetMapping("/orders")
-    public String orderList(@ModelAttribute("orderSearch") OrderSearch orderSearch, Model model) {
-        List<Order> orders = orderService.findOrders(orderSearch);
-        model.addAttribute("orders", orders);
+    public String orderList(@ModelAttribute("orderSearch") OrderSearch orderSearch,
+                            @RequestParam(value = "page", defaultValue = "0") int page,
+                            @RequestParam(value = "size", defaultValue = "20") int size,
+                            Model model) {
+        page = Math.max(0, Math.min(page, MAX_PAGE));
+        size = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        List<OrderListDto> orders = orderService.findOrderPage(orderSearch, page, size);
+        boolean hasNext = orders.size() > size && page < MAX_PAGE;
+        if (orders.size() > size) {
+            orders = orders.subList(0, size);
+        }
 
+        model.addAttribute("orders", orders);
+        model.addAttribute("page", page);
+        model.addAttribute("size", size);
+        model.addAttribute("hasNext", hasNext);
         return "order/orderList";
     }
 
@@ -0,0 +1,251 @@
+package jpabook.jpashop.datagen;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.query.NativeQuery;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.order.view.OrderViewRepository;
+import jpabook.jpashop.service.SalesService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 대용량 테스트 데이터 생성기.
+ * 엔티티를 하나씩 persist 하지만, 아래 방식으로 수백만 건도 일정한 메모리와 속도로 적재한다.
+ * - hibernate.jdbc.batch_size + order_inserts/order_updates 로 INSERT/UPDATE 를 JDBC 배치로 묶는다.
+ * - flushSize 마다 flush/clear 해서 영속성 컨텍스트가 커지지 않게 한다.
+ * - commitSize 마다 트랜잭션을 나눠서 커밋한다.
+ * 테이블별 적재 row 수와 초당 row 수를 로그로 남긴다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DataGenerator {
+
+    private static final int ITEM_STOCK = 1_000_000_000;
+
+    private final EntityManager em;
+    private final PlatformTransactionManager transactionManager;
+    private final SalesService salesService;
+    private final OrderViewRepository orderViewRepository;
+
+    public void generate(DataGeneratorProperties spec) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Random random = new Random(spec.getSeed());
+
+        long start = System.nanoTime();
+        long[] memberIds = insertMembers(tx, spec);
+        report("member", spec.getMembers(), start);
+
+        start = System.nanoTime();
+        int[] itemPrices = new int[spec.getItems()];
+        long[] itemIds = insertItems(tx, spec, random, itemPrices);
+        report("item", spec.getItems(), start);
+
+        start = System.nanoTime();
+        long orderItemRows = insertOrders(tx, spec, memberIds, itemIds, itemPrices, random);
+        // orders + delivery 는 주문 수만큼, order_item 은 주문상품 수만큼
+        report("orders/delivery/order_item", spec.getOrders() * 2L + orderItemRows, start);
+
+        // 조회 모델은 INSERT ... SELECT 로 한 번에 만든다. 주문마다 만들면 회원 이름을 읽으려고 회원 프록시를 초기화한다.
+        start = System.nanoTime();
+        long views = 0;
+        int inserted;
+        do {
+            inserted = tx.execute(status -> orderViewRepository.backfill(spec.getCommitSize()));
+            views += inserted;
+        } while (inserted > 0);
+        report("order_view", views, start);
+
+        start = System.nanoTime();
+        tx.executeWithoutResult(status -> removeOrderedStock(itemIds));
+        report("item(stock)", spec.getItems(), start);
+
+        // 주문을 OrderService 를 거치지 않고 넣었으므로 매출 집계는 한 번에 다시 만든다.
+        if (spec.getOrders() > 0) {
+            tx.executeWithoutResult(status -> salesService.rebuild());
+        }
+    }
+
+    private long[] insertMembers(TransactionTemplate tx, DataGeneratorProperties spec) {
+        long[] ids = new long[spec.getMembers()];
+        // 회원 이름은 유니크(uk_member_name)이므로 다시 실행해도 겹치지 않게 실행마다 접두어를 붙인다.
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        inChunks(tx, spec, spec.getMembers(), i -> {
+            Member member = new Member();
+            member.setName("member-" + run + "-" + i);
+            member.setAddress(address(i));
+            em.persist(member);
+            ids[i] = member.getId();
+        });
+        return ids;
+    }
+
+    /**
+     * 회원 주소. 주문의 배송지를 만들 때 회원 프록시를 초기화하지 않도록 인덱스로 다시 계산한다.
+     */
+    private static Address address(int memberIndex) {
+        return new Address("city-" + (memberIndex % 100), "street-" + memberIndex, String.valueOf(10000 + memberIndex % 90000));
+    }
+
+    private long[] insertItems(TransactionTemplate tx, DataGeneratorProperties spec, Random random, int[] prices) {
+        long[] ids = new long[spec.getItems()];
+        inChunks(tx, spec, spec.getItems(), i -> {
+            Book book = new Book();
+            book.setName("book-" + i);
+            prices[i] = 1000 + random.nextInt(100) * 500;
+            book.setPrice(prices[i]);
+            book.setStockQuantity(ITEM_STOCK);
+            book.setAuthor("author-" + (i % 1000));
+            book.setIsbn(String.valueOf(9_780_000_000_000L + i));
+            em.persist(book);
+            ids[i] = book.getId();
+        });
+        return ids;
+    }
+
+    /**
+     * 회원은 균등분포, 상품은 Zipf 분포로 고른다.
+     * 회원/상품은 getReference 로 프록시만 잡고 초기화하지 않는다. 배송지와 가격은 생성할 때 만든 값을 다시 쓰므로 SELECT 가 없다.
+     * 주문상품은 재고를 차감하지 않고(createReservedOrderItem) 만들고, 재고는 모든 주문을 넣은 뒤 removeOrderedStock 에서 한 번에 뺀다.
+     */
+    private long insertOrders(TransactionTemplate tx, DataGeneratorProperties spec,
+                              long[] memberIds, long[] itemIds, int[] itemPrices, Random random) {
+        double[] itemCdf = zipfCdf(itemIds.length, spec.getItemSkew());
+        LocalDateTime now = LocalDateTime.now();
+        long orderWindowSeconds = TimeUnit.DAYS.toSeconds(spec.getOrderDays());
+        int lineRange = spec.getMaxLinesPerOrder() - spec.getMinLinesPerOrder() + 1;
+        long[] orderItemRows = new long[1];
+
+        inChunks(tx, spec, spec.getOrders(), i -> {
+            int memberIndex = random.nextInt(memberIds.length);
+            Member member = em.getReference(Member.class, memberIds[memberIndex]);
+
+            Delivery delivery = new Delivery();
+            delivery.setAddress(address(memberIndex));
+            delivery.setStatus(random.nextDouble() < spec.getDeliveredRatio() ? DeliveryStatus.COMP : DeliveryStatus.READY);
+
+            OrderItem[] orderItems = new OrderItem[spec.getMinLinesPerOrder() + random.nextInt(lineRange)];
+            orderItemRows[0] += orderItems.length;
+            for (int j = 0; j < orderItems.length; j++) {
+                int itemIndex = pick(itemCdf, random);
+                Item item = em.getReference(Item.class, itemIds[itemIndex]);
+                orderItems[j] = OrderItem.createReservedOrderItem(item, itemPrices[itemIndex],
+                        1 + random.nextInt(spec.getMaxCountPerLine()));
+            }
+
+            // createOrder 는 member.getOrders() 에 추가하므로 회원 프록시마다 SELECT 가 나간다.
+            Order order = Order.createOrderByReference(member, delivery, orderItems);
+            order.setOrderDate(now.minusSeconds((long) (random.nextDouble() * orderWindowSeconds)));
+            em.persist(order);
+        });
+        return orderItemRows[0];
+    }
+
+    /**
+     * 생성한 주문상품 수량을 상품별로 합쳐서 재고에서 뺀다. 상품 1000개마다 UPDATE 한 번.
+     * 생성한 상품은 이번에 만든 주문에만 쓰였으므로 order_item 전체를 합쳐도 된다.
+     * Item 을 동기화 대상으로 지정하므로 item 2차 캐시 region 은 비워진다.
+     */
+    private void removeOrderedStock(long[] itemIds) {
+        for (int from = 0; from < itemIds.length; from += 1000) {
+            List<Long> chunk = Arrays.stream(itemIds, from, Math.min(from + 1000, itemIds.length))
+                    .boxed().collect(Collectors.toList());
+            em.createNativeQuery("update item i set stock_quantity = stock_quantity -" +
+                    " (select coalesce(sum(oi.count), 0) from order_item oi where oi.item_id = i.item_id)" +
+                    " where i.item_id in (:itemIds)")
+                    .setParameter("itemIds", chunk)
+                    .unwrap(NativeQuery.class)
+                    .addSynchronizedEntityClass(Item.class)
+                    .executeUpdate();
+        }
+    }
+
+    /**
+     * count 개의 row 를 commitSize 마다 트랜잭션을 나누고, flushSize 마다 flush/clear 하면서 적재한다.
+     */
+    private void inChunks(TransactionTemplate tx, DataGeneratorProperties spec, int count, RowWriter writer) {
+        for (int from = 0; from < count; from += spec.getCommitSize()) {
+            int start = from;
+            int end = Math.min(from + spec.getCommitSize(), count);
+            tx.executeWithoutResult(status -> {
+                for (int i = start; i < end; i++) {
+                    writer.write(i);
+                    if ((i - start + 1) % spec.getFlushSize() == 0) {
+                        em.flush();
+                        em.clear();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Zipf 분포의 누적분포. skew 가 0 이면 균등분포.
+     */
+    static double[] zipfCdf(int n, double skew) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    static int pick(double[] cdf, Random random) {
+        int idx = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(idx >= 0 ? idx : -idx - 1, cdf.length - 1);
+    }
+
+    private void report(String tables, long rows, long startNanos) {
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        log.info("[datagen] {} : {} rows in {} ms ({} rows/sec)", tables, rows, elapsedMillis, rows * 1000L / elapsedMillis);
+    }
+
+    @FunctionalInterface
+    interface RowWriter {
+        void write(int index);
+    }
+
+    /**
+     * jpashop.datagen.enabled=true 이면 애플리케이션 시작 시 데이터를 생성한다.
+     */
+    @Component
+    @ConditionalOnProperty(name = "jpashop.datagen.enabled", havingValue = "true")
+    @RequiredArgsConstructor
+    static class DataGeneratorRunner implements ApplicationRunner {
+
+        private final DataGenerator dataGenerator;
+        private final DataGeneratorProperties properties;
+
+        @Override
+        public void run(ApplicationArguments args) {
+            dataGenerator.generate(properties);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package jpabook.jpashop.datagen;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 대용량 테스트 데이터 생성 설정. (jpashop.datagen.*)
+ */
+@Component
+@ConfigurationProperties(prefix = "jpashop.datagen")
+@Getter
+@Setter
+public class DataGeneratorProperties {
+
+    private boolean enabled = false; // true 면 애플리케이션 시작 시 데이터를 생성한다.
+
+    private int members = 10_000;
+    private int items = 1_000;
+    private int orders = 100_000;
+
+    private int minLinesPerOrder = 1; // 주문 1건당 주문상품 수 (균등분포)
+    private int maxLinesPerOrder = 3;
+    private int maxCountPerLine = 3; // 주문상품 1건당 수량 (1 ~ maxCountPerLine, 균등분포)
+
+    private double itemSkew = 1.0; // 상품 인기도 Zipf 지수. 0 이면 균등분포, 클수록 일부 상품에 주문이 몰린다.
+    private int orderDays = 365; // 주문일시를 최근 orderDays 일 안에서 균등하게 분포시킨다.
+    private double deliveredRatio = 0.5; // 배송완료(COMP) 비율
+
+    private int flushSize = 500; // flush/clear 주기. hibernate.jdbc.batch_size 의 배수로 둔다.
+    private int commitSize = 10_000; // 트랜잭션 커밋 주기
+
+    private long seed = 42L;
+}
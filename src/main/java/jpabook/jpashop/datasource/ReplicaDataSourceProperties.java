@@ -0,0 +1,30 @@
+package jpabook.jpashop.datasource;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 읽기 전용 복제본(replica) 데이터소스 설정. (jpashop.datasource.replica.*)
+ * 커넥션 풀 설정은 jpashop.datasource.replica.hikari.* 로 따로 지정한다.
+ */
+@Component
+@ConfigurationProperties(prefix = "jpashop.datasource.replica")
+@Getter
+@Setter
+public class ReplicaDataSourceProperties {
+
+    private boolean enabled = false; // true 면 readOnly 트랜잭션을 replica 로 보낸다. (ReplicaRoutingConfig)
+
+    private String url;
+    private String username;
+    private String password;
+    private String driverClassName;
+
+    private Duration maxLag = Duration.ofSeconds(1); // 쓰기 트랜잭션 커밋 후 이 시간 동안은 같은 스레드의 읽기도 primary 로 보낸다.
+    private Duration retryAfter = Duration.ofSeconds(5); // replica 커넥션 획득에 실패하면 이 시간 동안 primary 만 사용한다.
+}
@@ -0,0 +1,119 @@
+package jpabook.jpashop.datasource;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * jpashop.datasource.replica.enabled=true 면 기본 데이터소스 대신 primary/replica 두 풀을 만들고
+ * ReplicaRoutingDataSource 로 트랜잭션마다 어느 풀을 쓸지 고른다.
+ *
+ * - primary : spring.datasource.* (풀 설정은 spring.datasource.hikari.*)
+ * - replica : jpashop.datasource.replica.* (풀 설정은 jpashop.datasource.replica.hikari.*)
+ * - 주입되는 DataSource 는 LazyConnectionDataSourceProxy 하나다. 두 풀은 autowireCandidate=false 로 등록하고
+ *   p6spy 는 프록시만 감싸도록 두 풀을 decorator.datasource.exclude-beans 에 둔다. (SQL 이 두 번 세어지지 않도록)
+ * - 스키마 생성/변경(ddl-auto)은 트랜잭션 밖이므로 primary 에서만 실행된다. replica 스키마는 복제로 맞춘다.
+ * - 2차 캐시는 primary/replica 가 함께 쓴다. replica 에서 읽은 엔티티를 캐시에 넣으면, 복제가 늦을 때 방금 primary 에서
+ *   수정되어 evict 된 값이 예전 값으로 다시 채워져 캐시 만료까지 남는다. replica 커넥션을 쓰는 트랜잭션은
+ *   캐시에서 읽기만 하고(CacheMode.GET) 넣지 않는다. 캐시는 primary 에서 읽은 값으로만 채워진다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "jpashop.datasource.replica.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class ReplicaRoutingConfig {
+
+    private final DataSourceProperties primaryProperties;
+    private final ReplicaDataSourceProperties replicaProperties;
+
+    @Bean(autowireCandidate = false)
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource() {
+        return primaryProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean(autowireCandidate = false)
+    @ConfigurationProperties("jpashop.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource() {
+        return DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(replicaProperties.getDriverClassName())
+                .url(replicaProperties.getUrl())
+                .username(replicaProperties.getUsername())
+                .password(replicaProperties.getPassword())
+                .build();
+    }
+
+    @Bean(autowireCandidate = false)
+    public ReplicaRoutingDataSource replicaRoutingDataSource() {
+        return new ReplicaRoutingDataSource(primaryDataSource(), replicaDataSource(),
+                replicaProperties.getMaxLag(), replicaProperties.getRetryAfter());
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource() {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource());
+    }
+
+    /*
+     * EntityManagerFactory 는 DataSource 로 만들어지므로, 둘 다 만들어진 뒤에 연결한다.
+     * */
+    @Bean
+    public SmartInitializingSingleton replicaLoadsSkipCachePut(EntityManagerFactory emf) {
+        return () -> replicaRoutingDataSource().setOnReplicaConnection(() -> getOnlyFromSecondLevelCache(emf));
+    }
+
+    /*
+     * 현재 트랜잭션의 세션이 2차 캐시에 값을 넣지 않게 하고, 트랜잭션이 끝나면 원래 모드로 되돌린다. (OSIV 로 세션이 이어지는 경우)
+     * JPA 트랜잭션이 아닌 JDBC 만 쓰는 경우에는 세션이 없으므로 아무것도 하지 않는다.
+     * */
+    private static void getOnlyFromSecondLevelCache(EntityManagerFactory emf) {
+        EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(emf);
+        if (holder == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Session session = holder.getEntityManager().unwrap(Session.class);
+        CacheMode previous = session.getCacheMode();
+        if (!previous.isPutEnabled()) {
+            return;
+        }
+        session.setCacheMode(CacheMode.GET);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                session.setCacheMode(previous);
+            }
+        });
+    }
+
+    /*
+     * 기본값(DELAYED_ACQUISITION_AND_HOLD)은 OSIV 에서 요청이 끝날 때까지 첫 트랜잭션의 커넥션을 잡고 있으므로
+     * 뒤에 오는 트랜잭션이 다른 쪽으로 가지 못한다. 트랜잭션이 끝날 때마다 커넥션을 반납하게 한다.
+     * */
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return hibernateProperties -> hibernateProperties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+}
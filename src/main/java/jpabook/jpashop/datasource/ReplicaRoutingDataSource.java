@@ -0,0 +1,128 @@
+package jpabook.jpashop.datasource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * readOnly 트랜잭션은 replica 로, 나머지는 primary 로 커넥션을 보낸다.
+ * 트랜잭션 속성은 트랜잭션이 시작된 뒤에야 알 수 있으므로 LazyConnectionDataSourceProxy 로 감싸서
+ * 첫 SQL 을 실행할 때 커넥션을 가져오도록 해야 한다. (ReplicaRoutingConfig)
+ *
+ * - 트랜잭션 밖(OSIV 지연 로딩 등)은 primary 를 사용한다.
+ * - replica 는 primary 보다 늦게 반영된다. 쓰기 트랜잭션을 커밋한 스레드는 maxLag 동안 읽기도 primary 로 보낸다.
+ *   같은 요청 안에서 수정 후 다시 조회하는 경우(MemberApiController.updateMemberV2 등)에 방금 쓴 값이 보이도록 하기 위함이다.
+ *   다른 요청, 다른 스레드의 읽기까지 보장하지는 않는다.
+ * - replica 커넥션을 얻지 못하면 primary 로 대신 연결하고, retryAfter 동안은 replica 를 시도하지 않는다.
+ * - replica 커넥션을 가져올 때마다 onReplicaConnection 을 호출한다. replica 에서 읽은 (늦게 반영된) 값이
+ *   2차 캐시에 들어가지 않도록 세션의 캐시 모드를 바꾸는 데 쓴다. (ReplicaRoutingConfig)
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    public enum Target { PRIMARY, REPLICA }
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final long maxLagNanos;
+    private final long retryAfterNanos;
+
+    private final ThreadLocal<Long> lastCommitNanos = new ThreadLocal<>();
+    private volatile long replicaRetryAt = System.nanoTime();
+    private volatile Runnable onReplicaConnection = () -> { };
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, Duration maxLag, Duration retryAfter) {
+        this.primary = primary;
+        this.replica = replica;
+        this.maxLagNanos = maxLag.toNanos();
+        this.retryAfterNanos = retryAfter.toNanos();
+    }
+
+    public void setOnReplicaConnection(Runnable onReplicaConnection) {
+        this.onReplicaConnection = onReplicaConnection;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connect(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connect(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private Connection connect(Connector connector) throws SQLException {
+        if (currentTarget() == Target.REPLICA) {
+            Connection connection = null;
+            try {
+                connection = connector.connect(replica);
+            } catch (SQLException e) {
+                replicaRetryAt = System.nanoTime() + retryAfterNanos;
+                log.warn("[replica] 커넥션 획득 실패, {}ms 동안 primary 를 사용합니다.", retryAfterNanos / 1_000_000, e);
+            }
+            if (connection != null) {
+                onReplicaConnection.run();
+                return connection;
+            }
+        }
+        return connector.connect(primary);
+    }
+
+    /**
+     * 현재 스레드의 트랜잭션으로 새 커넥션을 가져온다면 어느 쪽으로 갈지.
+     */
+    public Target currentTarget() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return Target.PRIMARY;
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            stickToPrimaryAfterCommit();
+            return Target.PRIMARY;
+        }
+        if (recentlyCommitted() || System.nanoTime() - replicaRetryAt < 0) {
+            return Target.PRIMARY;
+        }
+        return Target.REPLICA;
+    }
+
+    private boolean recentlyCommitted() {
+        Long committedAt = lastCommitNanos.get();
+        if (committedAt == null) {
+            return false;
+        }
+        if (System.nanoTime() - committedAt < maxLagNanos) {
+            return true;
+        }
+        lastCommitNanos.remove();
+        return false;
+    }
+
+    @FunctionalInterface
+    private interface Connector {
+        Connection connect(DataSource dataSource) throws SQLException;
+    }
+
+    /*
+     * 쓰기 트랜잭션마다 커넥션을 가져올 때 한 번 호출된다. SELECT 만 하고 커밋해도 쓰기로 본다.
+     * */
+    private void stickToPrimaryAfterCommit() {
+        if (maxLagNanos <= 0 || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                lastCommitNanos.set(System.nanoTime());
+            }
+        });
+    }
+}
@@ -3,6 +3,8 @@ package jpabook.jpashop.domain;
 import jpabook.jpashop.domain.item.Item;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -13,14 +15,20 @@ import java.util.List;
 @Setter
 public class Category {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "category_seq")
+    @GenericGenerator(name = "category_seq", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = "sequence_name", value = "category_seq"))
     @Column(name = "category_id")
     private Long id;
 
     private String name;
 
     @ManyToMany
-    @JoinTable(name = "category_item", joinColumns = @JoinColumn(name = "category_id"), inverseJoinColumns = @JoinColumn(name = "item_id"))
+    @JoinTable(name = "category_item", joinColumns = @JoinColumn(name = "category_id"), inverseJoinColumns = @JoinColumn(name = "item_id"),
+            indexes = {
+                    @Index(name = "idx_category_item_category", columnList = "category_id, item_id"), // 카테고리별 상품 (키셋 페이징)
+                    @Index(name = "idx_category_item_item", columnList = "item_id, category_id") // 상품별 카테고리
+            })
     private List<Item> items = new ArrayList<>();
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -30,9 +38,64 @@ public class Category {
     @OneToMany(mappedBy = "parent")
     private List<Category> child = new ArrayList<>();
 
+    // 자신을 포함한 모든 조상 (클로저 테이블)
+    @OneToMany(mappedBy = "descendant", cascade = CascadeType.ALL)
+    private List<CategoryClosure> ancestors = new ArrayList<>();
+
+    // 자신을 포함한 모든 자손 (클로저 테이블)
+    @OneToMany(mappedBy = "ancestor")
+    private List<CategoryClosure> descendants = new ArrayList<>();
+
     // == 연관관계 메서드 ==
+    /*
+     * 하위 카테고리 추가. 클로저 테이블도 함께 갱신한다.
+     * 이 카테고리의 조상(자신 포함) x child 의 자손(자신 포함) 쌍마다 클로저 행을 추가한다.
+     * 자손이 있는 카테고리도 붙일 수 있지만, 이미 상위 카테고리가 있는 카테고리를 옮기는 것은 지원하지 않는다.
+     * */
     public void addChildCategory(Category child) {
+        if (child.getParent() != null) {
+            throw new IllegalStateException("이미 상위 카테고리가 있는 카테고리입니다.");
+        }
+        ensureSelfClosure();
+        child.ensureSelfClosure();
+
+        List<CategoryClosure> ups = new ArrayList<>(this.ancestors);
+        List<CategoryClosure> downs = new ArrayList<>(child.descendants);
+        for (CategoryClosure up : ups) {
+            for (CategoryClosure down : downs) {
+                CategoryClosure.link(up.getAncestor(), down.getDescendant(), up.getDepth() + down.getDepth() + 1);
+            }
+        }
+
         this.child.add(child);
         child.setParent(this);
     }
+
+    /*
+     * 클로저 테이블이 생기기 전에 저장된 카테고리의 클로저 행을 만든다. (CategoryClosureBackfill)
+     * 상위 카테고리의 클로저가 먼저 있어야 하므로 상위부터 만든다. 이미 있으면 아무것도 하지 않는다.
+     * */
+    public void backfillClosure() {
+        if (!ancestors.isEmpty()) {
+            return;
+        }
+        ensureSelfClosure();
+        if (parent != null) {
+            parent.backfillClosure();
+            // parent 는 프록시일 수 있으므로 필드가 아니라 getter 로 읽는다.
+            for (CategoryClosure up : new ArrayList<>(parent.getAncestors())) {
+                CategoryClosure.link(up.getAncestor(), this, up.getDepth() + 1);
+            }
+        }
+    }
+
+    /*
+     * 자기 자신을 가리키는 클로저 행(depth 0). 하위 카테고리가 없는 최상위 카테고리도 persist 시점에 만든다.
+     * */
+    @PrePersist
+    void ensureSelfClosure() {
+        if (ancestors.isEmpty()) {
+            CategoryClosure.link(this, this, 0);
+        }
+    }
 }
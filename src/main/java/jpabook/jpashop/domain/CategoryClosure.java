@@ -0,0 +1,51 @@
+package jpabook.jpashop.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.*;
+
+/**
+ * 카테고리 클로저 테이블. 조상-자손 쌍마다 한 행을 가진다. (자기 자신도 depth 0 으로 포함)
+ * parent_id 를 따라 한 단계씩 조회하지 않고, ancestor_id 하나로 서브트리 전체를, descendant_id 하나로 조상 전체를 조회할 수 있다.
+ * Category.addChildCategory 에서 만든다. 클로저 테이블 이전의 카테고리는 Category.backfillClosure 로 채운다.
+ */
+@Entity
+@Table(name = "category_closure",
+        uniqueConstraints = @UniqueConstraint(name = "uk_category_closure", columnNames = {"ancestor_id", "descendant_id"}),
+        indexes = @Index(name = "idx_category_closure_descendant", columnList = "descendant_id, depth"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class CategoryClosure {
+
+    @Id
+    @GeneratedValue(generator = "category_closure_seq")
+    @GenericGenerator(name = "category_closure_seq", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = "sequence_name", value = "category_closure_seq"))
+    @Column(name = "category_closure_id")
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "ancestor_id")
+    private Category ancestor;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "descendant_id")
+    private Category descendant;
+
+    private int depth; // ancestor 에서 descendant 까지의 거리
+
+    // == 생성 메서드 ==
+    static CategoryClosure link(Category ancestor, Category descendant, int depth) {
+        CategoryClosure closure = new CategoryClosure();
+        closure.ancestor = ancestor;
+        closure.descendant = descendant;
+        closure.depth = depth;
+        ancestor.getDescendants().add(closure);
+        descendant.getAncestors().add(closure);
+        return closure;
+    }
+}
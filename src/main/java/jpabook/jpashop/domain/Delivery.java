@@ -2,6 +2,8 @@ package jpabook.jpashop.domain;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 
@@ -10,7 +12,9 @@ import javax.persistence.*;
 @Setter
 public class Delivery {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "delivery_seq")
+    @GenericGenerator(name = "delivery_seq", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = "sequence_name", value = "delivery_seq"))
     @Column(name = "delivery_id")
     private Long id;
 
@@ -2,6 +2,10 @@ package jpabook.jpashop.domain;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotEmpty;
@@ -9,12 +13,18 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+// 기존 DB 에 중복 이름이 있으면 ddl-auto 가 이 제약을 만들지 못한다. jpashop.member.migrate-unique-name 을 켜서 MemberNameMigration 으로 정리한다.
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_member_name", columnNames = "name"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "member")
 @Getter
 @Setter
 public class Member {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "member_seq")
+    @GenericGenerator(name = "member_seq", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = "sequence_name", value = "member_seq"))
     @Column(name = "member_id")
     private Long id;
 
@@ -4,6 +4,9 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 
@@ -14,14 +17,18 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_order_date_id", columnList = "orderDate, order_id"),
+        @Index(name = "idx_orders_total_price_id", columnList = "totalPrice, order_id")})
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class Order {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "orders_seq")
+    @GenericGenerator(name = "orders_seq", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = "sequence_name", value = "orders_seq"))
     @Column(name = "order_id")
     private Long id;
 
@@ -43,6 +50,14 @@ public class Order {
     @Enumerated(EnumType.STRING)
     private OrderStatus status; //주문상태 [ORDER, CANCEL]
 
+    // 주문 금액/주문상품 수. 주문상품을 추가할 때 함께 계산해서 저장해 두므로, 목록 조회 시 order_item 을 읽지 않아도 된다.
+    // 기존 주문은 컬럼이 추가될 때 0 으로 채워지고 OrderTotalsBackfill 이 다시 계산한다.
+    @ColumnDefault("0")
+    private int totalPrice;
+
+    @ColumnDefault("0")
+    private int itemCount;
+
     // == 연관관계 메서드 ==
     public void setMember(Member member) {
         this.member = member;
@@ -52,6 +67,8 @@ public class Order {
     public void addOrderItem(OrderItem orderItem){
         orderItems.add(orderItem);
         orderItem.setOrder(this);
+        this.totalPrice += orderItem.getTotalPrice();
+        this.itemCount += 1;
     }
 
     public void setDelivery(Delivery delivery){
@@ -61,8 +78,18 @@ public class Order {
 
     // == 생성 메서드 == // 복잡한 연관관계를 가진 객체를 쉽게 생성해줄 수 있게 해준다.
     public static Order createOrder(Member member, Delivery delivery, OrderItem... orderItems){
+        Order order = createOrderByReference(member, delivery, orderItems);
+        member.getOrders().add(order);
+        return order;
+    }
+
+    /*
+    * 회원 쪽 컬렉션(member.orders)에는 추가하지 않고 주문을 만든다. 연관관계의 주인은 Order.member 이므로 저장되는 값은 같다.
+    * member 가 getReference 로 얻은 프록시일 때 member.getOrders() 가 프록시를 초기화(SELECT)하지 않도록 대량 적재(DataGenerator)에서 쓴다.
+    * */
+    public static Order createOrderByReference(Member member, Delivery delivery, OrderItem... orderItems){
         Order order = new Order();
-        order.setMember(member);
+        order.member = member;
         order.setDelivery(delivery);
         for(OrderItem orderItem : orderItems){
             order.addOrderItem(orderItem);
@@ -75,27 +102,17 @@ public class Order {
     // == 비즈니스 로직 == //
     /*
     * 주문 취소
+    * 재고 복구는 동시 주문과 갱신이 유실되지 않도록 OrderService 에서 ItemRepository.addStock 으로 처리한다.
+    * 주문상품은 그대로이므로 주문 금액(totalPrice)도 그대로 둔다. 취소 금액 집계는 상태로 구분한다.
     * */
     public void cancel(){
+        if(status == OrderStatus.CANCEL){
+            throw new IllegalStateException("이미 취소된 주문입니다.");
+        }
         if(delivery.getStatus() == DeliveryStatus.COMP){
             throw new IllegalStateException("이미 배송완료된 상품은 취소가 불가능합니다.");
         }
 
         this.setStatus(OrderStatus.CANCEL);
-        for(OrderItem orderItem : orderItems){
-            orderItem.cancel();
-        }
-    }
-
-    // == 조회 로직 == //
-    /*
-    * 전체 주문 가격 조회
-    * */
-    public int getTotalPrice(){
-        int totalPrice = 0;
-        for(OrderItem orderItem : orderItems ){
-            totalPrice += orderItem.getTotalPrice();
-        }
-        return totalPrice;
     }
 }
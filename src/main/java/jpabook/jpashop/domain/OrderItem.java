@@ -5,6 +5,8 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.springframework.data.util.Lazy;
 
 import javax.persistence.*;
@@ -17,7 +19,9 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 @NoArgsConstructor(access = AccessLevel.PROTECTED) //기본 생성자를 protected 로 둬서 createOrderItem 메서드를 통한 생성이외의 생성을 막는다.
 public class OrderItem {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "order_item_seq")
+    @GenericGenerator(name = "order_item_seq", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = "sequence_name", value = "order_item_seq"))
     @Column(name = "order_item_id")
     Long id;
 
@@ -44,9 +48,15 @@ public class OrderItem {
         return orderItem;
     }
 
-    // == 비즈니스 로직 == //
-    public void cancel() {
-        getItem().addStock(count);
+    /*
+    * 재고 차감이 이미 DB 에서 처리된 경우 (ItemRepository.removeStock)
+    * */
+    public static OrderItem createReservedOrderItem(Item item, int orderPrice, int count){
+        OrderItem orderItem = new OrderItem();
+        orderItem.setItem(item);
+        orderItem.setOrderPrice(orderPrice);
+        orderItem.setCount(count);
+        return orderItem;
     }
 
     // == 조회 로직 == //
@@ -0,0 +1,60 @@
+package jpabook.jpashop.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 주문 조회 전용 모델(order_view).
+ * 주문 목록에 필요한 값들을 주문 1건당 1 row로 미리 펼쳐둔다.
+ * 조회 시 orders, member, delivery, order_item, item 을 조인하지 않고 단일 테이블만 읽는다.
+ * OrderService 에서 주문/취소할 때 같은 트랜잭션 안에서 함께 갱신한다.
+ */
+@Entity
+@Table(name = "order_view", indexes = {
+        @Index(name = "idx_order_view_status_id", columnList = "status, order_id"),
+        @Index(name = "idx_order_view_member_id", columnList = "memberId")})
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OrderView {
+
+    @Id
+    @Column(name = "order_id")
+    private Long id; // orders.order_id 와 같은 값
+
+    private Long memberId;
+    private String memberName;
+
+    @Embedded
+    private Address address; // 배송지
+
+    private LocalDateTime orderDate;
+
+    @Enumerated(EnumType.STRING)
+    private OrderStatus status;
+
+    private int totalPrice;
+    private int itemCount; // 주문상품(OrderItem) 수
+
+    // == 생성 메서드 == //
+    public static OrderView createOrderView(Order order) {
+        OrderView view = new OrderView();
+        view.id = order.getId();
+        view.memberId = order.getMember().getId();
+        view.memberName = order.getMember().getName();
+        view.address = order.getDelivery().getAddress();
+        view.orderDate = order.getOrderDate();
+        view.status = order.getStatus();
+        view.totalPrice = order.getTotalPrice();
+        view.itemCount = order.getItemCount();
+        return view;
+    }
+
+    // == 비즈니스 로직 == //
+    public void changeStatus(OrderStatus status) {
+        this.status = status;
+    }
+}
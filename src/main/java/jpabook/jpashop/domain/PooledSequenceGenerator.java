@@ -0,0 +1,41 @@
+package jpabook.jpashop.domain;
+
+import java.util.Properties;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * 엔티티별 시퀀스에서 id 를 블록 단위로 미리 받아오는 생성기.
+ * 기본 @GeneratedValue 는 모든 엔티티가 hibernate_sequence 하나를 공유하고, INSERT 마다 시퀀스를 한 번씩 호출한다.
+ * 이 생성기는 시퀀스를 한 번 호출할 때 블록 크기만큼 id 를 확보하고, 블록을 다 쓸 때까지 메모리에서 id 를 할당한다. (pooled-lo)
+ *
+ * - sequence_name : 엔티티별 시퀀스 이름. (@GenericGenerator parameters)
+ * - 블록 크기 : hibernate 설정 jpashop.id.block_size (spring.jpa.properties.jpashop.id.block_size). 기본 50.
+ *   엔티티에 increment_size 를 지정하면 그 값을 우선한다.
+ *
+ * 블록을 다 쓰기 전에 애플리케이션이 재시작되면 남은 id 는 버려지므로 id 사이에 빈 값이 생길 수 있다.
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String NAME = "jpabook.jpashop.domain.PooledSequenceGenerator";
+    public static final String BLOCK_SIZE_SETTING = "jpashop.id.block_size";
+    public static final int DEFAULT_BLOCK_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        if (!params.containsKey(INCREMENT_PARAM)) {
+            int blockSize = ConfigurationHelper.getInt(BLOCK_SIZE_SETTING,
+                    serviceRegistry.getService(ConfigurationService.class).getSettings(), DEFAULT_BLOCK_SIZE);
+            params.setProperty(INCREMENT_PARAM, String.valueOf(blockSize));
+        }
+        if (!params.containsKey(OPT_PARAM)) {
+            params.setProperty(OPT_PARAM, "pooled-lo");
+        }
+        super.configure(type, params, serviceRegistry);
+    }
+}
@@ -0,0 +1,79 @@
+package jpabook.jpashop.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.query.NativeQuery;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 엔티티별 시퀀스(PooledSequenceGenerator)를 테이블의 최대 id 뒤로 맞춘다.
+ * 기존 DB 의 행은 공유 시퀀스(hibernate_sequence)로 id 를 받았으므로, ddl-auto 로 새로 만들어진 엔티티별 시퀀스는 1 부터 시작해서
+ * 기존 id 와 겹친다. 시작할 때 시퀀스의 다음 값이 max(id) 이하이면 max(id) + 1 부터 다시 시작하게 한다.
+ * - 다음 값을 확인하려고 시퀀스를 한 번 호출하므로 블록 하나만큼 id 가 건너뛰어진다.
+ * - 빈 로딩 중(@PostConstruct)에 실행되므로 ApplicationRunner(DataGenerator 등)의 INSERT 보다 먼저 끝난다.
+ * - 여러 인스턴스가 동시에 시작하면 같은 값으로 두 번 맞출 수 있지만, 아직 INSERT 전이므로 결과는 같다.
+ * jpashop.id.seed-sequences=true 일 때만 등록된다. 기존 DB 를 엔티티별 시퀀스로 올릴 때 한 번만 켠다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "jpashop.id.seed-sequences", havingValue = "true")
+@RequiredArgsConstructor
+public class PooledSequenceSeeder {
+
+    private final EntityManager em;
+    private final PlatformTransactionManager transactionManager;
+
+    @PostConstruct
+    public void seed() {
+        SessionFactoryImplementor sessionFactory = em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class);
+        Dialect dialect = sessionFactory.getJdbcServices().getDialect();
+
+        List<AbstractEntityPersister> persisters = new ArrayList<>();
+        for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+            // 상속 관계(Item)는 루트 엔티티에서 한 번만 맞춘다.
+            if (persister.getIdentifierGenerator() instanceof PooledSequenceGenerator
+                    && persister.getEntityName().equals(persister.getRootEntityName())) {
+                persisters.add((AbstractEntityPersister) persister);
+            }
+        }
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (AbstractEntityPersister persister : persisters) {
+                String sequence = ((SequenceStyleGenerator) persister.getIdentifierGenerator()).getDatabaseStructure().getName();
+                seed(dialect, sequence, persister.getTableName(), persister.getIdentifierColumnNames()[0]);
+            }
+        });
+    }
+
+    private void seed(Dialect dialect, String sequence, String table, String idColumn) {
+        long maxId = ((Number) em.createNativeQuery(
+                "select coalesce(max(" + idColumn + "), 0) from " + table).getSingleResult()).longValue();
+        if (maxId == 0) {
+            return;
+        }
+        long next = ((Number) em.createNativeQuery(dialect.getSequenceNextValString(sequence))
+                .getSingleResult()).longValue();
+        if (next <= maxId) {
+            em.createNativeQuery("alter sequence " + sequence + " restart with " + (maxId + 1))
+                    .unwrap(NativeQuery.class)
+                    .addSynchronizedQuerySpace(sequence)
+                    .executeUpdate();
+            log.info("[id] sequence {} restarted at {} (max {}.{} = {})", sequence, maxId + 1, table, idColumn, maxId);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package jpabook.jpashop.domain;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * 일별/주문상태별 매출 집계(sales_daily).
+ * 주문/취소할 때 SalesRollupRepository 가 MERGE 로 증감한다. 엔티티로 저장하거나 수정하지 않는다.
+ * 같은 날의 주문이 모두 한 행을 갱신하면 행 잠금 경합이 생기므로, 같은 (날짜, 상태)를 shard 개의 행으로 나눠서 쌓고 조회할 때 합친다.
+ */
+@Entity
+@Table(name = "sales_daily")
+@IdClass(SalesDaily.Key.class)
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class SalesDaily {
+
+    @Id
+    private LocalDate salesDate;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    private OrderStatus status;
+
+    @Id
+    private int shard;
+
+    private long orderCount;
+    private long revenue;
+
+    @EqualsAndHashCode
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate salesDate;
+        private OrderStatus status;
+        private int shard;
+    }
+}
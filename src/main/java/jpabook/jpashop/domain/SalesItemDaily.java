@@ -0,0 +1,48 @@
+package jpabook.jpashop.domain;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * 일별/상품별/주문상태별 판매 집계(sales_item_daily).
+ * SalesDaily 와 같은 방식으로 shard 개의 행으로 나눠서 MERGE 로 증감한다.
+ */
+@Entity
+@Table(name = "sales_item_daily", indexes = @Index(name = "idx_sales_item_daily_item", columnList = "item_id, salesDate"))
+@IdClass(SalesItemDaily.Key.class)
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class SalesItemDaily {
+
+    @Id
+    private LocalDate salesDate;
+
+    @Id
+    @Column(name = "item_id")
+    private Long itemId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    private OrderStatus status;
+
+    @Id
+    private int shard;
+
+    private long quantity;
+    private long revenue;
+
+    @EqualsAndHashCode
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate salesDate;
+        private Long itemId;
+        private OrderStatus status;
+        private int shard;
+    }
+}
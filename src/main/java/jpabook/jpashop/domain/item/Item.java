@@ -1,22 +1,39 @@
 package jpabook.jpashop.domain.item;
 
 import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.PooledSequenceGenerator;
 import jpabook.jpashop.exception.NotEnoughStockException;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(indexes = @Index(name = "idx_item_name", columnList = "name"))
+/*
+ * 2차 캐시(item region). 재고(stockQuantity)도 캐시되는 상태에 포함된다.
+ * 재고는 ItemRepository 의 조건부 UPDATE 로 바뀌고, 그때마다 해당 상품을 캐시에서 비운다. (evictFromSecondLevelCache)
+ * 따라서 주문이 잦은 인기 상품일수록 캐시 적중이 줄고, 주문 뒤 첫 조회는 SELECT 가 한 번 더 나간다.
+ * 주문이 드문 상품의 조회(상품 목록/상세, 주문 시 가격 조회)는 그대로 캐시를 탄다.
+ * 인기 상품까지 캐시하려면 재고를 캐시하지 않는 별도 테이블로 분리해야 한다.
+ * */
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "item")
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "dtype")
 @Getter
 @Setter
 public abstract class Item {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "item_seq")
+    @GenericGenerator(name = "item_seq", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = "sequence_name", value = "item_seq"))
     @Column(name = "item_id")
     Long id;
 
@@ -0,0 +1,108 @@
+package jpabook.jpashop.monitor;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AutoFlushEventListener;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+
+/**
+ * hibernate-micrometer(HibernateMetrics) 가 등록하는 전체 합계 외에, 원인을 찾는 데 필요한 세부 지표를 등록한다.
+ * - jpashop.hibernate.entity.loads / fetches : 엔티티 타입별 로딩 수. fetches 가 많으면 지연 로딩(N+1)이 많다는 뜻이다.
+ * - jpashop.hibernate.query.max : 전체 쿼리 중 가장 오래 걸린 실행 시간. 쿼리 문자열을 태그로 붙이면 쿼리 수만큼 시계열이
+ *   생기므로(태그 카디널리티 무제한) 어떤 쿼리인지는 /api/admin/hibernate 의 slowestQueries 로 확인한다.
+ * - jpashop.hibernate.cache.hit.ratio : 2차 캐시 region 별 적중률.
+ * - jpashop.hibernate.flush.entities : flush 시점에 영속성 컨텍스트가 관리하던 엔티티 수. flush 는 관리 중인 엔티티를 모두
+ *   dirty checking 하므로 이 값이 크면 flush 가 느려진다. type=flush(명시적/커밋), auto(쿼리 전 자동 flush)
+ * 모두 hibernate.generate_statistics=true 일 때만 의미가 있다.
+ */
+@Component
+public class HibernateStatisticsMetrics {
+
+    private final Statistics statistics;
+    private final SessionFactoryImplementor sessionFactory;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary flushEntities;
+    private final DistributionSummary autoFlushEntities;
+
+    public HibernateStatisticsMetrics(EntityManagerFactory emf, MeterRegistry meterRegistry) {
+        this.sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        this.statistics = sessionFactory.getStatistics();
+        this.meterRegistry = meterRegistry;
+        this.flushEntities = flushSummary("flush");
+        this.autoFlushEntities = flushSummary("auto");
+    }
+
+    @PostConstruct
+    void register() {
+        for (String entity : statistics.getEntityNames()) {
+            String simpleName = entity.substring(entity.lastIndexOf('.') + 1);
+            FunctionCounter.builder("jpashop.hibernate.entity.loads", statistics,
+                    s -> s.getEntityStatistics(entity).getLoadCount())
+                    .tag("entity", simpleName)
+                    .register(meterRegistry);
+            FunctionCounter.builder("jpashop.hibernate.entity.fetches", statistics,
+                    s -> s.getEntityStatistics(entity).getFetchCount())
+                    .tag("entity", simpleName)
+                    .register(meterRegistry);
+        }
+
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            Gauge.builder("jpashop.hibernate.cache.hit.ratio", statistics, s -> hitRatio(s.getDomainDataRegionStatistics(region)))
+                    .tag("region", region)
+                    .register(meterRegistry);
+        }
+
+        EventListenerRegistry listeners = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        // 기본 리스너 뒤에 실행된다. flush 로 관리 대상이 바뀌지는 않으므로 flush 직후의 수를 기록한다.
+        listeners.appendListeners(EventType.FLUSH, (FlushEventListener) event ->
+                flushEntities.record(managedEntities(event.getSession())));
+        listeners.appendListeners(EventType.AUTO_FLUSH, (AutoFlushEventListener) event -> {
+            if (event.isFlushRequired()) {
+                autoFlushEntities.record(managedEntities(event.getSession()));
+            }
+        });
+
+        TimeGauge.builder("jpashop.hibernate.query.max", statistics, TimeUnit.MILLISECONDS, Statistics::getQueryExecutionMaxTime)
+                .register(meterRegistry);
+    }
+
+    public DistributionSummary getFlushEntities() {
+        return flushEntities;
+    }
+
+    public DistributionSummary getAutoFlushEntities() {
+        return autoFlushEntities;
+    }
+
+    public static double hitRatio(CacheRegionStatistics region) {
+        long total = region.getHitCount() + region.getMissCount();
+        return total == 0 ? 0 : (double) region.getHitCount() / total;
+    }
+
+    private DistributionSummary flushSummary(String type) {
+        return DistributionSummary.builder("jpashop.hibernate.flush.entities")
+                .description("flush 시점에 영속성 컨텍스트가 관리하던 엔티티 수")
+                .tag("type", type)
+                .register(meterRegistry);
+    }
+
+    private static int managedEntities(EventSource session) {
+        return session.getPersistenceContext().getNumberOfManagedEntities();
+    }
+}
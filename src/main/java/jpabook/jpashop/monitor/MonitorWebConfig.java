@@ -0,0 +1,19 @@
+package jpabook.jpashop.monitor;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import lombok.RequiredArgsConstructor;
+
+@Configuration
+@RequiredArgsConstructor
+public class MonitorWebConfig implements WebMvcConfigurer {
+
+    private final SqlEndpointInterceptor sqlEndpointInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(sqlEndpointInterceptor);
+    }
+}
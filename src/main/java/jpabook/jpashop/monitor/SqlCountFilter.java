@@ -0,0 +1,265 @@
+package jpabook.jpashop.monitor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Map;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 요청마다 실행된 SQL 수, JDBC 시간, 반복된 SQL 모양을 측정한다.
+ * - 응답 헤더: X-Sql-Count, X-Sql-Time-Ms, X-Sql-Max-Repeat
+ *   응답 본문을 headerBufferBytes 까지 버퍼에 모았다가 요청 처리가 끝난 뒤 헤더를 붙이므로, JSON 직렬화나 템플릿 렌더링 중의 지연 로딩까지 포함된다.
+ *   본문이 그보다 크면 버퍼가 넘친 시점까지의 값이다. 전체 값은 로그에 남는다.
+ *   스트리밍 응답(NDJSON, SSE)과 비동기 요청은 버퍼에 모으지 않으므로 본문을 쓰기 시작하기 직전까지의 값이다.
+ * - 로그: 요청이 끝난 뒤 한 줄. 같은 모양이 nPlusOneThreshold 번 이상 반복되면 N+1 의심으로 경고한다.
+ */
+@Slf4j
+@Component
+public class SqlCountFilter extends OncePerRequestFilter {
+
+    public static final String COUNT_HEADER = "X-Sql-Count";
+    public static final String TIME_HEADER = "X-Sql-Time-Ms";
+    public static final String MAX_REPEAT_HEADER = "X-Sql-Max-Repeat";
+
+    @Value("${jpashop.sql.n-plus-one-threshold:5}")
+    private int nPlusOneThreshold;
+
+    @Value("${jpashop.sql.header-buffer-bytes:65536}")
+    private int headerBufferBytes;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        SqlStatistics statistics = SqlCounter.start();
+        SqlHeaderResponse wrapper = new SqlHeaderResponse(response, statistics, headerBufferBytes);
+        try {
+            filterChain.doFilter(request, wrapper);
+        } finally {
+            SqlCounter.stop();
+            if (request.isAsyncStarted()) {
+                // 응답은 비동기 디스패치에서 쓰이므로 버퍼에 모으지 않는다.
+                wrapper.passThrough();
+            } else {
+                wrapper.finish();
+            }
+            logStatistics(request, statistics);
+        }
+    }
+
+    private void logStatistics(HttpServletRequest request, SqlStatistics statistics) {
+        if (statistics.getCount() == 0) {
+            return;
+        }
+        Map<String, Integer> repeated = statistics.getRepeatedShapes();
+        log.info("[sql] {} {} count={} time={}ms repeatedShapes={}",
+                request.getMethod(), request.getRequestURI(),
+                statistics.getCount(), statistics.getTotalTimeMillis(), repeated.size());
+
+        if (statistics.getMaxRepeat() >= nPlusOneThreshold) {
+            repeated.forEach((shape, count) -> {
+                if (count >= nPlusOneThreshold) {
+                    log.warn("[sql] N+1 suspected {} {} x{} : {}", request.getMethod(), request.getRequestURI(), count, shape);
+                }
+            });
+        }
+    }
+
+    /**
+     * 본문을 bufferLimit 바이트까지만 버퍼에 모으고, 요청 처리가 끝난 뒤 헤더를 붙여서 내보낸다.
+     * 본문이 bufferLimit 를 넘으면 그 시점까지의 값으로 헤더를 붙이고, 모은 본문과 나머지를 원래 응답에 바로 쓴다.
+     * 응답이 커도 요청 하나가 잡는 메모리는 bufferLimit 를 넘지 않는다.
+     * 스트리밍 응답은 모으면 스트리밍하는 의미가 없으므로, 본문을 쓰기 시작할 때 헤더를 붙이고 원래 응답에 바로 쓴다.
+     */
+    static class SqlHeaderResponse extends HttpServletResponseWrapper {
+
+        private final SqlStatistics statistics;
+        private final int bufferLimit;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private boolean stamped;
+        private boolean passThrough;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        SqlHeaderResponse(HttpServletResponse response, SqlStatistics statistics, int bufferLimit) {
+            super(response);
+            this.statistics = statistics;
+            this.bufferLimit = bufferLimit;
+        }
+
+        void passThrough() throws IOException {
+            passThrough = true;
+            if (buffer.size() > 0) {
+                buffer.writeTo(getResponse().getOutputStream());
+                buffer.reset();
+            }
+        }
+
+        void stampHeaders() {
+            if (stamped || isCommitted()) {
+                return;
+            }
+            stamped = true;
+            setHeader(COUNT_HEADER, String.valueOf(statistics.getCount()));
+            setHeader(TIME_HEADER, String.valueOf(statistics.getTotalTimeMillis()));
+            setHeader(MAX_REPEAT_HEADER, String.valueOf(statistics.getMaxRepeat()));
+        }
+
+        /*
+         * 요청 처리가 끝났을 때 호출한다. 헤더를 붙이고 모아둔 본문을 내보낸다.
+         * */
+        void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            release();
+        }
+
+        /*
+         * 헤더를 붙이고 모아둔 본문을 원래 응답에 쓴다. 이후의 본문은 버퍼를 거치지 않는다.
+         * */
+        private void release() throws IOException {
+            if (passThrough) {
+                return;
+            }
+            passThrough = true;
+            stampHeaders();
+            if (buffer.size() > 0) {
+                buffer.writeTo(getResponse().getOutputStream());
+                buffer.reset();
+            }
+        }
+
+        private boolean streaming() throws IOException {
+            String contentType = getContentType();
+            if (!passThrough && contentType != null
+                    && (contentType.startsWith("application/x-ndjson") || contentType.startsWith("text/event-stream"))) {
+                release();
+            }
+            if (passThrough) {
+                stampHeaders();
+            }
+            return passThrough;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = streaming() ? getResponse().getOutputStream() : new HeaderStampingOutputStream();
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = streaming() ? getResponse().getWriter()
+                        : new PrintWriter(new OutputStreamWriter(new HeaderStampingOutputStream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            // 모으는 중에는 원래 응답을 커밋하지 않는다. 커밋되면 헤더를 붙일 수 없다.
+            if (passThrough) {
+                getResponse().flushBuffer();
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            buffer.reset();
+            super.resetBuffer();
+        }
+
+        @Override
+        public void reset() {
+            buffer.reset();
+            super.reset();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            buffer.reset();
+            stampHeaders();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            buffer.reset();
+            stampHeaders();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            buffer.reset();
+            stampHeaders();
+            super.sendRedirect(location);
+        }
+
+        /*
+         * bufferLimit 까지는 buffer 에 쓰고, 넘으면 release 한 뒤 원래 응답에 쓴다.
+         * flush 는 모으는 중에는 무시한다. (메시지 컨버터가 본문을 쓴 뒤 flush 를 호출한다)
+         * */
+        private class HeaderStampingOutputStream extends ServletOutputStream {
+
+            @Override
+            public void write(int b) throws IOException {
+                if (!passThrough && buffer.size() + 1 > bufferLimit) {
+                    release();
+                }
+                if (passThrough) {
+                    getResponse().getOutputStream().write(b);
+                } else {
+                    buffer.write(b);
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (!passThrough && buffer.size() + len > bufferLimit) {
+                    release();
+                }
+                if (passThrough) {
+                    getResponse().getOutputStream().write(b, off, len);
+                } else {
+                    buffer.write(b, off, len);
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (passThrough) {
+                    getResponse().getOutputStream().flush();
+                }
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+}
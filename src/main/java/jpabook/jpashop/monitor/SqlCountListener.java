@@ -0,0 +1,25 @@
+package jpabook.jpashop.monitor;
+
+import java.sql.SQLException;
+
+import org.springframework.stereotype.Component;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+
+/**
+ * p6spy 로 감싼 커넥션에서 실행되는 모든 SQL 을 현재 스레드의 SqlStatistics 에 기록한다.
+ * JdbcEventListener 빈은 p6spy-spring-boot-starter 가 자동으로 등록한다.
+ * JDBC 배치는 한 번의 실행(round trip)으로 센다.
+ */
+@Component
+public class SqlCountListener extends SimpleJdbcEventListener {
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        SqlStatistics statistics = SqlCounter.current();
+        if (statistics != null) {
+            statistics.record(statementInformation.getSql(), timeElapsedNanos);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package jpabook.jpashop.monitor;
+
+/**
+ * 현재 스레드에서 실행되는 SQL 을 세는 범위를 관리한다.
+ * start() 와 stop() 사이에 같은 스레드에서 실행된 SQL 만 기록된다.
+ * (요청 단위는 SqlCountFilter, 테스트에서는 직접 start/stop 한다.)
+ */
+public final class SqlCounter {
+
+    private static final ThreadLocal<SqlStatistics> CURRENT = new ThreadLocal<>();
+
+    private SqlCounter() {
+    }
+
+    public static SqlStatistics start() {
+        SqlStatistics statistics = new SqlStatistics();
+        CURRENT.set(statistics);
+        return statistics;
+    }
+
+    /**
+     * 측정 중이 아니면 null.
+     */
+    public static SqlStatistics current() {
+        return CURRENT.get();
+    }
+
+    public static SqlStatistics stop() {
+        SqlStatistics statistics = CURRENT.get();
+        CURRENT.remove();
+        return statistics;
+    }
+}
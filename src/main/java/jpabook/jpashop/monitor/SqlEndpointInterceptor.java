@@ -0,0 +1,37 @@
+package jpabook.jpashop.monitor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 요청을 처리할 컨트롤러 메서드 이름(예: OrderApiController.ordersV3)을 현재 요청의 SqlStatistics 에 남긴다.
+ * SqlProfile 은 이 이름으로 SQL 을 엔드포인트별로 나눠서 모은다.
+ * 요청이 끝나면 닫히지 않은 ResultSet 의 fetch 기록을 정리한다.
+ */
+@Component
+@RequiredArgsConstructor
+public class SqlEndpointInterceptor implements HandlerInterceptor {
+
+    private final SqlProfileListener sqlProfileListener;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        SqlStatistics statistics = SqlCounter.current();
+        if (statistics != null && handler instanceof HandlerMethod) {
+            HandlerMethod handlerMethod = (HandlerMethod) handler;
+            statistics.setEndpoint(handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        sqlProfileListener.flushOpenResultSets();
+    }
+}
@@ -0,0 +1,121 @@
+package jpabook.jpashop.monitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * 엔드포인트(컨트롤러 메서드)와 SQL 모양별 실행 시간, fetch 시간 분포.
+ * - 실행 시간 : execute 한 번에 걸린 시간. fetch 시간 : ResultSet 하나를 next() 로 끝까지 읽는 데 걸린 시간의 합.
+ * - 분포는 HdrHistogram 에 마이크로초 단위, 유효숫자 2자리로 기록한다. 기록은 락 없이 하고, 조회할 때 복사본에서 백분위를 구한다.
+ * - 모양 수가 maxShapes 를 넘으면 새 모양은 엔드포인트별 "(other)" 로 합친다.
+ * - 실행 또는 fetch 가 slowThresholdMs 이상이면 jpashop.sql.slow 로거에 한 줄 남긴다. 바인드 값 대신 모양을 남기므로 값은 노출되지 않는다.
+ * 애플리케이션이 떠 있는 동안 누적되며 reset() 으로 비운다. (SqlApiController)
+ */
+@Component
+public class SqlProfile {
+
+    public static final String NO_ENDPOINT = "-";
+    private static final String OTHER_SHAPE = "(other)";
+    private static final Logger slowLog = LoggerFactory.getLogger("jpashop.sql.slow");
+
+    @Value("${jpashop.sql.profile.max-shapes:500}")
+    private int maxShapes;
+
+    @Value("${jpashop.sql.slow-threshold-ms:200}")
+    private long slowThresholdMs;
+
+    private final ConcurrentMap<Key, ShapeStats> shapes = new ConcurrentHashMap<>();
+
+    void recordExecute(String endpoint, String sql, long elapsedNanos) {
+        ShapeStats stats = stats(endpoint, sql);
+        stats.executeMicros.recordValue(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+        logIfSlow("execute", stats, elapsedNanos, -1);
+    }
+
+    void recordFetch(String endpoint, String sql, long elapsedNanos, long rows) {
+        ShapeStats stats = stats(endpoint, sql);
+        stats.fetchMicros.recordValue(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+        stats.rows.add(rows);
+        logIfSlow("fetch", stats, elapsedNanos, rows);
+    }
+
+    public List<ShapeStats> getShapes() {
+        return new ArrayList<>(shapes.values());
+    }
+
+    public void reset() {
+        shapes.clear();
+    }
+
+    private ShapeStats stats(String endpoint, String sql) {
+        Key key = new Key(endpoint, SqlShape.of(sql));
+        ShapeStats stats = shapes.get(key);
+        if (stats != null) {
+            return stats;
+        }
+        if (shapes.size() >= maxShapes) {
+            key = new Key(endpoint, OTHER_SHAPE);
+        }
+        return shapes.computeIfAbsent(key, ShapeStats::new);
+    }
+
+    private void logIfSlow(String phase, ShapeStats stats, long elapsedNanos, long rows) {
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        if (elapsedMs >= slowThresholdMs) {
+            slowLog.warn("endpoint={} phase={} elapsedMs={} rows={} sql=\"{}\"",
+                    stats.endpoint, phase, elapsedMs, rows, stats.shape);
+        }
+    }
+
+    @Getter
+    public static class ShapeStats {
+        private final String endpoint;
+        private final String shape;
+        @Getter(AccessLevel.NONE)
+        private final ConcurrentHistogram executeMicros = new ConcurrentHistogram(2);
+        @Getter(AccessLevel.NONE)
+        private final ConcurrentHistogram fetchMicros = new ConcurrentHistogram(2);
+        @Getter(AccessLevel.NONE)
+        private final LongAdder rows = new LongAdder();
+
+        private ShapeStats(Key key) {
+            this.endpoint = key.endpoint;
+            this.shape = key.shape;
+        }
+
+        public Histogram getExecuteMicros() {
+            return executeMicros.copy();
+        }
+
+        public Histogram getFetchMicros() {
+            return fetchMicros.copy();
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class Key {
+        private final String endpoint;
+        private final String shape;
+    }
+}
@@ -0,0 +1,78 @@
+package jpabook.jpashop.monitor;
+
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+import com.p6spy.engine.common.ResultSetInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * p6spy 로 감싼 커넥션의 SQL 실행 시간과 ResultSet fetch 시간을 SqlProfile 에 기록한다.
+ * fetch 시간은 ResultSet 마다 next() 시간을 모았다가 close() 할 때 한 번 기록한다.
+ * 엔드포인트는 현재 요청의 SqlStatistics 에서 가져온다. 요청 밖(스케줄러, 백그라운드 스레드)은 "-" 로 모은다.
+ */
+@Component
+@RequiredArgsConstructor
+public class SqlProfileListener extends SimpleJdbcEventListener {
+
+    private final SqlProfile profile;
+
+    // ResultSet 은 연 스레드에서 읽고 닫으므로 스레드별로 둔다
+    private final ThreadLocal<Map<ResultSetInformation, Fetch>> fetches = ThreadLocal.withInitial(IdentityHashMap::new);
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        profile.recordExecute(endpoint(), statementInformation.getSql(), timeElapsedNanos);
+    }
+
+    @Override
+    public void onAfterResultSetNext(ResultSetInformation resultSetInformation, long timeElapsedNanos, boolean hasNext,
+            SQLException e) {
+        Fetch fetch = fetches.get().computeIfAbsent(resultSetInformation, rs -> new Fetch());
+        fetch.nanos += timeElapsedNanos;
+        if (hasNext) {
+            fetch.rows++;
+        }
+    }
+
+    @Override
+    public void onAfterResultSetClose(ResultSetInformation resultSetInformation, SQLException e) {
+        Fetch fetch = fetches.get().remove(resultSetInformation);
+        if (fetch != null) {
+            profile.recordFetch(endpoint(), resultSetInformation.getSql(), fetch.nanos, fetch.rows);
+        }
+    }
+
+    /**
+     * 닫히지 않은 ResultSet(끝까지 읽지 않고 버린 ScrollableResults 등)의 fetch 시간을 기록하고 스레드의 맵을 비운다.
+     * 요청 스레드는 풀에서 재사용되므로, 비우지 않으면 요청이 끝나도 맵에 남는다. (SqlEndpointInterceptor.afterCompletion)
+     */
+    void flushOpenResultSets() {
+        Map<ResultSetInformation, Fetch> open = fetches.get();
+        if (open.isEmpty()) {
+            return;
+        }
+        String endpoint = endpoint();
+        open.forEach((rs, fetch) -> profile.recordFetch(endpoint, rs.getSql(), fetch.nanos, fetch.rows));
+        open.clear();
+    }
+
+    private static String endpoint() {
+        SqlStatistics statistics = SqlCounter.current();
+        if (statistics == null || statistics.getEndpoint() == null) {
+            return SqlProfile.NO_ENDPOINT;
+        }
+        return statistics.getEndpoint();
+    }
+
+    private static class Fetch {
+        private long nanos;
+        private long rows;
+    }
+}
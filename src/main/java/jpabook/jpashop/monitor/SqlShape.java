@@ -0,0 +1,46 @@
+package jpabook.jpashop.monitor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * SQL 을 "모양"으로 정규화한다.
+ * 리터럴 값과 IN 절의 원소 수를 지워서, 파라미터만 다른 같은 쿼리는 같은 문자열이 되도록 한다.
+ * 같은 모양이 한 요청에서 여러 번 실행되면 N+1 을 의심할 수 있다.
+ * Hibernate 가 만드는 SQL 문자열은 종류가 많지 않으므로 정규화 결과를 CACHE_SIZE 개까지 캐시한다.
+ */
+public final class SqlShape {
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final int CACHE_SIZE = 10_000;
+    private static final Map<String, String> CACHE = new ConcurrentHashMap<>();
+
+    private SqlShape() {
+    }
+
+    public static String of(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        String shape = CACHE.get(sql);
+        if (shape == null) {
+            shape = normalize(sql);
+            if (CACHE.size() < CACHE_SIZE) {
+                CACHE.put(sql, shape);
+            }
+        }
+        return shape;
+    }
+
+    private static String normalize(String sql) {
+        String shape = WHITESPACE.matcher(sql.trim().toLowerCase()).replaceAll(" ");
+        shape = STRING_LITERAL.matcher(shape).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        return IN_LIST.matcher(shape).replaceAll("in (...)");
+    }
+}
@@ -0,0 +1,63 @@
+package jpabook.jpashop.monitor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 한 요청(또는 테스트 블록) 동안 실행된 SQL 통계.
+ * 같은 스레드에서만 기록되므로 동기화하지 않는다.
+ */
+public class SqlStatistics {
+
+    private int count;
+    private long totalNanos;
+    private final Map<String, Integer> shapeCounts = new LinkedHashMap<>();
+    private String endpoint; // 요청을 처리한 컨트롤러 메서드 (SqlEndpointInterceptor)
+
+    void record(String sql, long elapsedNanos) {
+        count++;
+        totalNanos += elapsedNanos;
+        shapeCounts.merge(SqlShape.of(sql), 1, Integer::sum);
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getTotalTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+    }
+
+    /**
+     * 실행된 SQL 모양과 실행 횟수. 실행 순서대로다.
+     */
+    public Map<String, Integer> getShapes() {
+        return new LinkedHashMap<>(shapeCounts);
+    }
+
+    /**
+     * 두 번 이상 실행된 SQL 모양과 실행 횟수.
+     */
+    public Map<String, Integer> getRepeatedShapes() {
+        return shapeCounts.entrySet().stream()
+                .filter(e -> e.getValue() > 1)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+    }
+
+    /**
+     * 같은 모양의 SQL 이 가장 많이 반복된 횟수. N+1 이면 조회된 row 수만큼 커진다.
+     */
+    public int getMaxRepeat() {
+        return shapeCounts.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+    }
+}
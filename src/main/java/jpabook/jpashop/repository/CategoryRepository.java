@@ -0,0 +1,48 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.Category;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class CategoryRepository {
+
+    private final EntityManager em;
+
+    public void save(Category category) {
+        em.persist(category);
+    }
+
+    public Category findOne(Long id) {
+        return em.find(Category.class, id);
+    }
+
+    /**
+     * 클로저 행이 하나도 없는(자기 자신 행도 없는) 카테고리. 클로저 테이블 이전에 저장된 카테고리다.
+     */
+    public List<Category> findWithoutClosure(int limit) {
+        return em.createQuery(
+                "select c from Category c" +
+                " where not exists (select cc.id from CategoryClosure cc where cc.descendant = c)" +
+                " order by c.id", Category.class)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * 카테고리 트리 전체를 쿼리 한 번으로 조회한다. (id, name, parent_id)
+     * 엔티티를 만들지 않으므로 parent/child 지연로딩도 일어나지 않는다.
+     */
+    public List<CategoryRow> findAllRows() {
+        return em.createQuery(
+                "select new jpabook.jpashop.repository.CategoryRow(c.id, c.name, p.id)" +
+                " from Category c" +
+                " left join c.parent p" +
+                " order by c.id", CategoryRow.class)
+                .getResultList();
+    }
+}
@@ -0,0 +1,20 @@
+package jpabook.jpashop.repository;
+
+import lombok.Getter;
+
+/**
+ * 카테고리 트리 한 노드의 컬럼. parentId 가 null 이면 최상위 카테고리.
+ */
+@Getter
+public class CategoryRow {
+
+    private final Long id;
+    private final String name;
+    private final Long parentId;
+
+    public CategoryRow(Long id, String name, Long parentId) {
+        this.id = id;
+        this.name = name;
+        this.parentId = parentId;
+    }
+}
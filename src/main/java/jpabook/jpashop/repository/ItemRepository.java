@@ -2,15 +2,26 @@ package jpabook.jpashop.repository;
 
 import jpabook.jpashop.domain.item.Item;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.hibernate.query.NativeQuery;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.Cache;
+import javax.persistence.DiscriminatorValue;
 import javax.persistence.EntityManager;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 @Repository
 @RequiredArgsConstructor
 public class ItemRepository {
 
+    private static final String STOCK_QUERY_SPACE = "item_stock";
+
     private final EntityManager em;
 
     public void save(Item item) {
@@ -19,6 +30,7 @@ public class ItemRepository {
         } else {
             //병합을 하게 되면 mergeItem 은 영속상태의 객체이지만, item 이 영속상태가 되지는 않는다.
             //병합은 모든 필드의 값을 변경시켜버리므로, item 에 값이 없으면, db 값이 null 로 변경될 수도 있다.
+            //병합도 변경감지와 같이 Hibernate 를 거치므로 2차 캐시(item region)는 커밋 시점에 함께 갱신된다.
             Item mergeItem = em.merge(item);
         }
     }
@@ -30,4 +42,166 @@ public class ItemRepository {
     public List<Item> findAll() {
         return em.createQuery("select i from Item i", Item.class).getResultList();
     }
+
+    public List<Item> findByIds(Collection<Long> ids) {
+        return em.createQuery("select i from Item i where i.id in :ids", Item.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    /*
+     * 카테고리 서브트리(자신 포함)에 속한 상품. 키셋(커서) 페이징, item_id 기준.
+     * 클로저 테이블로 서브트리의 카테고리를 한 번에 찾으므로 트리 깊이와 상관없이 쿼리 한 번이다.
+     * - category_closure (ancestor_id, descendant_id) 유니크 인덱스로 서브트리 카테고리를 찾고
+     * - category_item (category_id, item_id) 인덱스로 카테고리별 item_id > afterId 구간만 읽는다.
+     * 여러 카테고리에 속한 상품도 한 번만 나오도록 IN 서브쿼리(semi join)로 거른다.
+     * type 은 상품 엔티티 이름(Book, Album, Movie). null 이면 전체.
+     * */
+    @SuppressWarnings("unchecked")
+    public List<Item> findAllInCategory(Long categoryId, String type, Long afterId, int limit) {
+        String dtype = type == null ? null : discriminatorOf(type);
+        String sql = "select i.* from item i" +
+                " where i.item_id in (" +
+                "   select ci.item_id from category_closure cc" +
+                "   join category_item ci on ci.category_id = cc.descendant_id" +
+                "   where cc.ancestor_id = :categoryId and ci.item_id > :afterId)" +
+                (dtype == null ? "" : " and i.dtype = :dtype") +
+                " order by i.item_id";
+
+        NativeQuery<Item> query = em.createNativeQuery(sql, Item.class)
+                .setParameter("categoryId", categoryId)
+                .setParameter("afterId", afterId == null ? 0L : afterId)
+                .setMaxResults(limit)
+                .unwrap(NativeQuery.class)
+                // 쿼리 공간을 지정해서 관련 없는 엔티티의 변경까지 flush 하지 않게 한다.
+                .addSynchronizedQuerySpace("item")
+                .addSynchronizedQuerySpace("category_item")
+                .addSynchronizedQuerySpace("category_closure");
+        if (dtype != null) {
+            query.setParameter("dtype", dtype);
+        }
+        return query.getResultList();
+    }
+
+    private String discriminatorOf(String type) {
+        return em.getMetamodel().getEntities().stream()
+                .filter(e -> e.getName().equals(type) && Item.class.isAssignableFrom(e.getJavaType()))
+                .map(e -> e.getJavaType().getAnnotation(DiscriminatorValue.class))
+                .filter(Objects::nonNull)
+                .map(DiscriminatorValue::value)
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("알 수 없는 상품 타입입니다: " + type));
+    }
+
+    /*
+     * 재고 차감. 조건부 UPDATE 한 번으로 재고 확인과 차감을 원자적으로 처리한다.
+     * 엔티티를 읽고 고쳐서 쓰는(read-modify-write) 방식과 달리 동시에 같은 상품을 주문해도 갱신이 유실되지 않고,
+     * 행 잠금도 비관적 락처럼 조회부터가 아니라 UPDATE 순간부터만 잡는다.
+     * 재고가 부족해서 차감하지 못했으면 false.
+     * 영속성 컨텍스트를 flush 하지 않으므로, 아직 flush 되지 않은 상품이 있으면 호출자가 먼저 flush 한다.
+     * */
+    public boolean removeStock(Long itemId, int quantity) {
+        return updateStock("update item set stock_quantity = stock_quantity - :quantity" +
+                " where item_id = :itemId and stock_quantity >= :quantity", itemId, quantity) == 1;
+    }
+
+    /*
+     * 재고 증가. 조건부 UPDATE 로 처리한다.
+     * */
+    public void addStock(Long itemId, int quantity) {
+        updateStock("update item set stock_quantity = stock_quantity + :quantity" +
+                " where item_id = :itemId", itemId, quantity);
+    }
+
+    /*
+     * 주문 일괄 취소 시 재고 복구. 주문상품 수량을 상품별로 합쳐서 UPDATE 한 번으로 더한다.
+     * 주문이나 주문상품 수와 상관없이 상품 id 조회 한 번, UPDATE 한 번이다.
+     * 2차 캐시는 재고가 바뀐 상품만 비운다. 영속성 컨텍스트의 상품은 갱신하지 않으므로 호출자가 clear 한다.
+     * */
+    @SuppressWarnings("unchecked")
+    public void restoreStock(Collection<Long> orderIds) {
+        // 주문할 때(OrderService.reserveStock)와 같이 item_id 순서로 상품 행을 먼저 잠근다. 순서가 다르면 교착 상태가 생긴다.
+        List<Long> itemIds = ((List<Number>) em.createNativeQuery(
+                "select i.item_id from item i" +
+                " where i.item_id in (select oi.item_id from order_item oi where oi.order_id in (:orderIds))" +
+                " order by i.item_id for update")
+                .setParameter("orderIds", orderIds)
+                .getResultList())
+                .stream().map(Number::longValue).collect(Collectors.toList());
+        if (itemIds.isEmpty()) {
+            return;
+        }
+        em.createNativeQuery("update item i set stock_quantity = stock_quantity +" +
+                " (select sum(oi.count) from order_item oi where oi.order_id in (:orderIds) and oi.item_id = i.item_id)" +
+                " where i.item_id in (:itemIds)")
+                .setParameter("orderIds", orderIds)
+                .setParameter("itemIds", itemIds)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace(STOCK_QUERY_SPACE)
+                .executeUpdate();
+        itemIds.forEach(this::evictFromSecondLevelCache);
+    }
+
+    /*
+     * 엔티티 버전. 아직 flush 되지 않은 변경(예: 방금 저장한 상품)을 먼저 반영하고,
+     * 재고를 바꾼 뒤 영속성 컨텍스트의 상품도 DB 값으로 맞춘다.
+     * */
+    public boolean removeStock(Item item, int quantity) {
+        em.flush();
+        boolean removed = removeStock(idOf(item), quantity);
+        refreshIfLoaded(item);
+        return removed;
+    }
+
+    public void addStock(Item item, int quantity) {
+        em.flush();
+        addStock(idOf(item), quantity);
+        refreshIfLoaded(item);
+    }
+
+    /*
+     * 네이티브 UPDATE 는 영속성 컨텍스트를 거치지 않으므로, 이미 로딩된 상품이면 DB 값으로 다시 읽는다.
+     * 다시 읽지 않으면 이후 변경감지 UPDATE 가 예전 재고 값으로 덮어쓸 수 있다.
+     * 초기화되지 않은 프록시는 나중에 초기화될 때 DB 값을 읽으므로 그대로 둔다.
+     * */
+    public void refreshIfLoaded(Item item) {
+        if (em.contains(item) && Hibernate.isInitialized(item)) {
+            em.refresh(item);
+        }
+    }
+
+    private Long idOf(Item item) {
+        // 프록시를 초기화하지 않고 식별자만 꺼낸다.
+        return (Long) em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(item);
+    }
+
+    private int updateStock(String sql, Long itemId, int quantity) {
+        int updated = em.createNativeQuery(sql)
+                .setParameter("quantity", quantity)
+                .setParameter("itemId", itemId)
+                .unwrap(NativeQuery.class)
+                // 쿼리 공간을 지정하지 않으면 네이티브 UPDATE 는 2차 캐시 전체를 비운다. 아래에서 해당 상품만 비운다.
+                .addSynchronizedQuerySpace(STOCK_QUERY_SPACE)
+                .executeUpdate();
+        evictFromSecondLevelCache(itemId);
+        return updated;
+    }
+
+    /*
+     * 2차 캐시에서 해당 상품만 비운다.
+     * 커밋 전에 다른 트랜잭션이 예전 값을 다시 캐시에 넣을 수 있으므로, 트랜잭션이 끝난 뒤에도 한 번 더 비운다.
+     * 재고가 바뀔 때마다 비우므로 다음 조회는 DB 에서 읽는다. 재고가 캐시된 상태에 포함되어 있는 한 피할 수 없는 비용이다.
+     * */
+    private void evictFromSecondLevelCache(Long itemId) {
+        Cache cache = em.getEntityManagerFactory().getCache();
+        cache.evict(Item.class, itemId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.evict(Item.class, itemId);
+                }
+            });
+        }
+    }
 }
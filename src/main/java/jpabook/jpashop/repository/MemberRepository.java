@@ -2,11 +2,18 @@ package jpabook.jpashop.repository;
 
 import jpabook.jpashop.domain.Member;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.query.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Repository
 @RequiredArgsConstructor
@@ -18,6 +25,14 @@ public class MemberRepository {
         em.persist(member);
     }
 
+    /*
+     * 쓰기 지연된 INSERT/UPDATE 를 바로 실행한다. 유니크 제약 위반을 커밋 전에, 이 저장소의 예외 변환을 거쳐
+     * DataIntegrityViolationException 으로 받기 위해 쓴다.
+     * */
+    public void flush() {
+        em.flush();
+    }
+
     public Member findOne(Long id) {
         return em.find(Member.class, id);
     }
@@ -27,8 +42,56 @@ public class MemberRepository {
         return em.createQuery("select m from Member m", Member.class).getResultList();
     }
 
+    public List<Member> findByIds(Collection<Long> ids) {
+        return em.createQuery("select m from Member m where m.id in :ids", Member.class).setParameter("ids", ids).getResultList();
+    }
+
     public List<Member> findByName(String name) {
         return em.createQuery("select m from Member m where m.name = :name", Member.class).setParameter("name", name).getResultList();
     }
 
+    /**
+     * 이름 중복 확인용. 엔티티를 읽지 않고 uk_member_name 인덱스만 확인한다.
+     */
+    public boolean existsByName(String name) {
+        return !em.createQuery("select m.id from Member m where m.name = :name", Long.class)
+                .setParameter("name", name)
+                .setMaxResults(1)
+                .getResultList()
+                .isEmpty();
+    }
+
+    /**
+     * 이름이 같은 회원 중 id 가 가장 작은 회원만 남기고 나머지 이름 뒤에 "#id" 를 붙인다.
+     * uk_member_name 이 생기기 전에 저장된 중복 이름을 정리할 때 쓴다. (MemberNameMigration)
+     */
+    public int renameDuplicateNames() {
+        return em.createNativeQuery(
+                "update member m set name = concat(m.name, '#', m.member_id)" +
+                        " where exists (select 1 from member d where d.name = m.name and d.member_id < m.member_id)")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(Member.class)
+                .executeUpdate();
+    }
+
+    public long count() {
+        return em.createQuery("select count(m) from Member m", Long.class).getSingleResult();
+    }
+
+    /**
+     * 전체 회원 이름을 forward-only 커서로 읽는다. 회원 수와 상관없이 메모리에 올리지 않는다.
+     */
+    @Transactional(readOnly = true)
+    public void forEachName(Consumer<String> consumer) {
+        Query<String> query = em.createQuery("select m.name from Member m", String.class).unwrap(Query.class);
+        try (ScrollableResults scroll = query
+                .setFetchSize(1000)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (scroll.next()) {
+                consumer.accept((String) scroll.get(0));
+            }
+        }
+    }
+
 }
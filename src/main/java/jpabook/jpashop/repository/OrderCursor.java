@@ -0,0 +1,47 @@
+package jpabook.jpashop.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import jpabook.jpashop.domain.Order;
+import lombok.Getter;
+
+/**
+ * 주문 키셋(커서) 페이징의 위치 정보.
+ * 마지막으로 조회한 주문의 (orderDate, id)를 기억하고, 다음 페이지는 그 이후부터 조회한다.
+ * 클라이언트에게는 내부 구조를 알 수 없도록 Base64 문자열로 감싸서 전달한다.
+ */
+@Getter
+public class OrderCursor {
+
+    private static final String DELIMITER = "_";
+
+    private final LocalDateTime orderDate;
+    private final Long orderId;
+
+    public OrderCursor(LocalDateTime orderDate, Long orderId) {
+        this.orderDate = orderDate;
+        this.orderId = orderId;
+    }
+
+    public static OrderCursor of(Order order) {
+        return new OrderCursor(order.getOrderDate(), order.getId());
+    }
+
+    public String encode() {
+        String raw = orderDate + DELIMITER + orderId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static OrderCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int idx = raw.lastIndexOf(DELIMITER);
+            return new OrderCursor(LocalDateTime.parse(raw.substring(0, idx)), Long.valueOf(raw.substring(idx + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("잘못된 커서입니다: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package jpabook.jpashop.repository;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.util.StringUtils;
+
+import lombok.Getter;
+
+/**
+ * 주문 조회 시 클라이언트가 고른 필드(fields)와 연관관계(expand). 쉼표로 구분한 이름으로 받는다.
+ * - fields : 주문 테이블 컬럼. orderId 는 항상 포함한다. 지정하지 않으면 모두 포함한다.
+ * - expand : member, delivery 는 엔티티 그래프로 주문과 같은 쿼리에서 조인한다.
+ *   items 는 조인하면 페이징이 메모리에서 일어나므로 조인하지 않고, 컬렉션에 접근할 때 default_batch_fetch_size 로 IN 쿼리 한 번에 가져온다.
+ * expand 가 없으면 엔티티를 만들지 않고 고른 컬럼만 SELECT 한다. (OrderRepository.findFields)
+ */
+@Getter
+public class OrderFetchPlan {
+
+    @Getter
+    public enum Field {
+        ORDER_DATE("orderDate", "orderDate"),
+        ORDER_STATUS("orderStatus", "status"),
+        TOTAL_PRICE("totalPrice", "totalPrice"),
+        ITEM_COUNT("itemCount", "itemCount");
+
+        private final String paramName; // 요청/응답에서 쓰는 이름
+        private final String attribute; // Order 엔티티 속성 이름
+
+        Field(String paramName, String attribute) {
+            this.paramName = paramName;
+            this.attribute = attribute;
+        }
+    }
+
+    @Getter
+    public enum Expand {
+        MEMBER("member"),
+        DELIVERY("delivery"),
+        ITEMS("items");
+
+        private final String paramName;
+
+        Expand(String paramName) {
+            this.paramName = paramName;
+        }
+    }
+
+    private final Set<Field> fields;
+    private final Set<Expand> expand;
+
+    public OrderFetchPlan(Set<Field> fields, Set<Expand> expand) {
+        this.fields = Collections.unmodifiableSet(fields);
+        this.expand = Collections.unmodifiableSet(expand);
+    }
+
+    /**
+     * @throws IllegalArgumentException 모르는 이름이 있을 때
+     */
+    public static OrderFetchPlan parse(String fields, String expand) {
+        EnumSet<Field> fieldSet = EnumSet.allOf(Field.class);
+        if (fields != null) {
+            fieldSet = EnumSet.noneOf(Field.class);
+            for (String name : split(fields)) {
+                if (!name.equals("orderId")) {
+                    fieldSet.add(find(Field.values(), Field::getParamName, name));
+                }
+            }
+        }
+        EnumSet<Expand> expandSet = EnumSet.noneOf(Expand.class);
+        if (expand != null) {
+            for (String name : split(expand)) {
+                expandSet.add(find(Expand.values(), Expand::getParamName, name));
+            }
+        }
+        return new OrderFetchPlan(fieldSet, expandSet);
+    }
+
+    public boolean has(Field field) {
+        return fields.contains(field);
+    }
+
+    public boolean has(Expand expand) {
+        return this.expand.contains(expand);
+    }
+
+    private static String[] split(String names) {
+        return Arrays.stream(names.split(","))
+                .map(String::trim)
+                .filter(StringUtils::hasText)
+                .toArray(String[]::new);
+    }
+
+    private static <E> E find(E[] values, Function<E, String> paramName, String name) {
+        for (E value : values) {
+            if (paramName.apply(value).equals(name)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("알 수 없는 이름입니다: " + name + " (사용 가능: "
+                + Arrays.stream(values).map(paramName).collect(Collectors.joining(", ")) + ")");
+    }
+}
@@ -1,16 +1,23 @@
 package jpabook.jpashop.repository;
 
+import jpabook.jpashop.domain.DeliveryStatus;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderStatus;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.query.NativeQuery;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 
+import javax.persistence.EntityGraph;
 import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Repository
 @RequiredArgsConstructor
@@ -68,6 +75,84 @@ public class OrderRepository {
             .getResultList();
     }
 
+    /**
+     * 키셋(커서) 페이징. order_id 기준.
+     * offset 방식은 offset 만큼의 row를 읽고 버리기 때문에 뒤 페이지로 갈수록 느려진다.
+     * PK 인덱스에서 afterId 다음 위치부터 limit 만큼만 읽으므로 페이지 깊이와 상관없이 일정한 속도가 나온다.
+     */
+    public List<Order> findAllWithMemberDeliveryAfter(Long afterId, int limit){
+        return em.createQuery(
+            "select o from Order o"+
+            " join fetch o.member m"+
+            " join fetch o.delivery d"+
+            " where o.id > :afterId"+
+            " order by o.id", Order.class)
+            .setParameter("afterId", afterId == null ? 0L : afterId)
+            .setMaxResults(limit)
+            .getResultList();
+    }
+
+    /**
+     * 클라이언트가 고른 연관관계(OrderFetchPlan.expand)만 엔티티 그래프로 조인해서 조회한다. order_id 순 키셋 페이징.
+     * 그래프에 없는 toOne 은 프록시로 남는다. 컬렉션(items)은 그래프에 넣지 않는다. (OrderFetchPlan)
+     */
+    public List<Order> findAllWithGraph(OrderFetchPlan plan, Long afterId, int limit){
+        EntityGraph<Order> graph = em.createEntityGraph(Order.class);
+        if (plan.has(OrderFetchPlan.Expand.MEMBER)) {
+            graph.addAttributeNodes("member");
+        }
+        if (plan.has(OrderFetchPlan.Expand.DELIVERY)) {
+            graph.addAttributeNodes("delivery");
+        }
+        return em.createQuery(
+            "select o from Order o"+
+            " where o.id > :afterId"+
+            " order by o.id", Order.class)
+            .setParameter("afterId", afterId == null ? 0L : afterId)
+            .setHint("javax.persistence.fetchgraph", graph)
+            .setMaxResults(limit)
+            .getResultList();
+    }
+
+    /**
+     * 연관관계가 필요 없을 때. 엔티티 대신 고른 컬럼만 SELECT 한다. 튜플 alias 는 OrderFetchPlan.Field 의 paramName.
+     */
+    public List<Tuple> findFields(OrderFetchPlan plan, Long afterId, int limit){
+        StringBuilder jpql = new StringBuilder("select o.id as orderId");
+        for (OrderFetchPlan.Field field : plan.getFields()) {
+            jpql.append(", o.").append(field.getAttribute()).append(" as ").append(field.getParamName());
+        }
+        jpql.append(" from Order o where o.id > :afterId order by o.id");
+
+        return em.createQuery(jpql.toString(), Tuple.class)
+            .setParameter("afterId", afterId == null ? 0L : afterId)
+            .setMaxResults(limit)
+            .getResultList();
+    }
+
+    /**
+     * 키셋(커서) 페이징. (orderDate, order_id) 기준.
+     * orders(order_date, order_id) 인덱스를 사용한다. cursor가 null이면 첫 페이지.
+     */
+    public List<Order> findAllWithMemberDelivery(OrderCursor cursor, int limit){
+        String jpql = "select o from Order o"+
+            " join fetch o.member m"+
+            " join fetch o.delivery d";
+        if (cursor != null) {
+            jpql += " where o.orderDate > :orderDate"+
+                " or (o.orderDate = :orderDate and o.id > :orderId)";
+        }
+        jpql += " order by o.orderDate, o.id";
+
+        TypedQuery<Order> query = em.createQuery(jpql, Order.class)
+            .setMaxResults(limit);
+        if (cursor != null) {
+            query.setParameter("orderDate", cursor.getOrderDate());
+            query.setParameter("orderId", cursor.getOrderId());
+        }
+        return query.getResultList();
+    }
+
 
     /*
      * JPQL 로 처리하는 방법.
@@ -98,6 +183,32 @@ public class OrderRepository {
             }
             jpql += " m.name like :name";
         }
+
+        //주문 금액 검색. 저장된 totalPrice 컬럼을 사용하므로 order_item 을 읽지 않는다.
+        if (orderSearch.getMinTotalPrice() != null) {
+            if (isFirstCondition) {
+                jpql += " where";
+                isFirstCondition = false;
+            } else {
+                jpql += " and";
+            }
+            jpql += " o.totalPrice >= :minTotalPrice";
+        }
+        if (orderSearch.getMaxTotalPrice() != null) {
+            if (isFirstCondition) {
+                jpql += " where";
+                isFirstCondition = false;
+            } else {
+                jpql += " and";
+            }
+            jpql += " o.totalPrice <= :maxTotalPrice";
+        }
+
+        //정렬
+        if (orderSearch.getSort() != null) {
+            jpql += " order by " + orderBy(orderSearch.getSort());
+        }
+
         TypedQuery<Order> query = em.createQuery(jpql, Order.class)
                 .setMaxResults(1000); //최대 1000건
         if (orderSearch.getOrderStatus() != null) {
@@ -106,9 +217,129 @@ public class OrderRepository {
         if (StringUtils.hasText(orderSearch.getMemberName())) {
             query = query.setParameter("name", orderSearch.getMemberName());
         }
+        if (orderSearch.getMinTotalPrice() != null) {
+            query = query.setParameter("minTotalPrice", orderSearch.getMinTotalPrice());
+        }
+        if (orderSearch.getMaxTotalPrice() != null) {
+            query = query.setParameter("maxTotalPrice", orderSearch.getMaxTotalPrice());
+        }
         return query.getResultList();
     }
 
+    private String orderBy(OrderSearch.OrderSort sort) {
+        switch (sort) {
+            case TOTAL_PRICE_DESC:
+                return "o.totalPrice desc, o.id desc";
+            case TOTAL_PRICE_ASC:
+                return "o.totalPrice asc, o.id asc";
+            case LATEST:
+            default:
+                return "o.orderDate desc, o.id desc";
+        }
+    }
+
+    /**
+     * 주문 금액/주문상품 수 컬럼이 추가되기 전에 저장된 주문(item_count = 0)을 order_item 에서 다시 계산한다.
+     * 주문상품이 없는 주문은 없으므로 item_count = 0 이면 아직 계산되지 않은 주문이다.
+     * batchSize 건씩 나눠서 갱신하고, 갱신한 주문 수를 반환한다. 더 갱신할 주문이 없으면 0.
+     */
+    public int backfillTotals(int batchSize) {
+        return em.createNativeQuery(
+                "update orders o set" +
+                " total_price = (select coalesce(sum(oi.order_price * oi.count), 0) from order_item oi where oi.order_id = o.order_id)," +
+                " item_count = (select count(*) from order_item oi where oi.order_id = o.order_id)" +
+                " where o.order_id in (" +
+                "   select o2.order_id from orders o2" +
+                "   where o2.item_count = 0" +
+                "   and exists (select 1 from order_item oi where oi.order_id = o2.order_id)" +
+                "   limit :batchSize)")
+                .setParameter("batchSize", batchSize)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(Order.class)
+                .executeUpdate();
+    }
+
+    /**
+     * 검색 조건에 맞는 주문 id. 일괄 취소 대상을 고를 때 사용하며 엔티티를 만들지 않는다. (order_id 순, 최대 limit 건)
+     */
+    public List<Long> findIds(OrderSearch orderSearch, int limit) {
+        List<String> conditions = new ArrayList<>();
+        if (orderSearch.getOrderStatus() != null) {
+            conditions.add("o.status = :status");
+        }
+        if (StringUtils.hasText(orderSearch.getMemberName())) {
+            conditions.add("o.member.name like :name");
+        }
+        if (orderSearch.getMinTotalPrice() != null) {
+            conditions.add("o.totalPrice >= :minTotalPrice");
+        }
+        if (orderSearch.getMaxTotalPrice() != null) {
+            conditions.add("o.totalPrice <= :maxTotalPrice");
+        }
+        String jpql = "select o.id from Order o"
+                + (conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions))
+                + " order by o.id";
+
+        TypedQuery<Long> query = em.createQuery(jpql, Long.class)
+                .setMaxResults(limit);
+        if (orderSearch.getOrderStatus() != null) {
+            query.setParameter("status", orderSearch.getOrderStatus());
+        }
+        if (StringUtils.hasText(orderSearch.getMemberName())) {
+            query.setParameter("name", orderSearch.getMemberName());
+        }
+        if (orderSearch.getMinTotalPrice() != null) {
+            query.setParameter("minTotalPrice", orderSearch.getMinTotalPrice());
+        }
+        if (orderSearch.getMaxTotalPrice() != null) {
+            query.setParameter("maxTotalPrice", orderSearch.getMaxTotalPrice());
+        }
+        return query.getResultList();
+    }
+
+    /**
+     * 일괄 취소 대상 주문의 상태와 배송 상태를 읽으면서 주문 행을 잠근다. (select ... for update)
+     * 커밋할 때까지 같은 주문을 동시에 취소하거나 배송완료로 바꾸는 트랜잭션은 기다린다.
+     * 아직 flush 되지 않은 변경을 먼저 반영한다. 없는 주문은 결과에 없다.
+     */
+    @SuppressWarnings("unchecked")
+    public List<OrderStatusRow> lockForCancel(Collection<Long> orderIds) {
+        em.flush();
+        List<Object[]> rows = em.createNativeQuery(
+                "select o.order_id, o.status, d.status delivery_status" +
+                " from orders o" +
+                " left join delivery d on d.delivery_id = o.delivery_id" +
+                " where o.order_id in (:orderIds)" +
+                " for update")
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+        return rows.stream()
+                .map(r -> new OrderStatusRow(
+                        ((Number) r[0]).longValue(),
+                        OrderStatus.valueOf((String) r[1]),
+                        r[2] == null ? null : DeliveryStatus.valueOf((String) r[2])))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 주문 상태 일괄 변경. 벌크 UPDATE 는 영속성 컨텍스트를 거치지 않으므로, 이후에 주문 엔티티를 다시 쓰려면 clear() 를 호출한다.
+     */
+    public int updateStatus(Collection<Long> orderIds, OrderStatus status) {
+        return em.createQuery("update Order o set o.status = :status where o.id in :orderIds")
+                .setParameter("status", status)
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+    }
+
+    /**
+     * 남은 변경을 반영하고 영속성 컨텍스트를 비운다.
+     * 벌크 UPDATE 뒤에 호출하면 이후 조회는 DB 값으로 엔티티를 다시 만든다.
+     */
+    public void clear() {
+        em.flush();
+        em.clear();
+    }
+
     /*
      * JPA Criteria 로 처리하는 방법
      * 실무에서 사용하기에는 복잡하다.
@@ -131,7 +362,23 @@ public class OrderRepository {
             Predicate name = cb.like(m.<String>get("name"), "%" + orderSearch.getMemberName() + "%");
             criteria.add(name);
         }
+        //주문 금액 검색
+        if (orderSearch.getMinTotalPrice() != null) {
+            criteria.add(cb.ge(o.<Integer>get("totalPrice"), orderSearch.getMinTotalPrice()));
+        }
+        if (orderSearch.getMaxTotalPrice() != null) {
+            criteria.add(cb.le(o.<Integer>get("totalPrice"), orderSearch.getMaxTotalPrice()));
+        }
         cq.where(cb.and(criteria.toArray(new Predicate[criteria.size()])));
+
+        //정렬
+        if (orderSearch.getSort() == OrderSearch.OrderSort.TOTAL_PRICE_DESC) {
+            cq.orderBy(cb.desc(o.get("totalPrice")), cb.desc(o.get("id")));
+        } else if (orderSearch.getSort() == OrderSearch.OrderSort.TOTAL_PRICE_ASC) {
+            cq.orderBy(cb.asc(o.get("totalPrice")), cb.asc(o.get("id")));
+        } else if (orderSearch.getSort() == OrderSearch.OrderSort.LATEST) {
+            cq.orderBy(cb.desc(o.get("orderDate")), cb.desc(o.get("id")));
+        }
         TypedQuery<Order> query = em.createQuery(cq).setMaxResults(1000); //최대1000 건
         return query.getResultList();
     }
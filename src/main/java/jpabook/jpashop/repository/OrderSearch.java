@@ -9,4 +9,13 @@ import lombok.Setter;
 public class OrderSearch {
     private String memberName;
     private OrderStatus orderStatus;
+    private Integer minTotalPrice; //주문 금액 이상
+    private Integer maxTotalPrice; //주문 금액 이하
+    private OrderSort sort; //정렬. null 이면 정렬하지 않는다.
+
+    public enum OrderSort {
+        LATEST, //최근 주문 순
+        TOTAL_PRICE_DESC, //주문 금액 큰 순
+        TOTAL_PRICE_ASC //주문 금액 작은 순
+    }
 }
@@ -0,0 +1,17 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/*
+ * 일괄 취소 전에 잠그면서 읽는 주문 상태와 배송 상태. (OrderRepository.lockForCancel)
+ * */
+@Getter
+@AllArgsConstructor
+public class OrderStatusRow {
+    private final Long orderId;
+    private final OrderStatus status;
+    private final DeliveryStatus deliveryStatus; // 배송정보가 없으면 null
+}
@@ -0,0 +1,18 @@
+package jpabook.jpashop.repository.item.query;
+
+import lombok.Data;
+
+@Data
+public class ItemQueryDto {
+    private Long itemId;
+    private String name;
+    private int price;
+    private int stockQuantity;
+
+    public ItemQueryDto(Long itemId, String name, int price, int stockQuantity) {
+        this.itemId = itemId;
+        this.name = name;
+        this.price = price;
+        this.stockQuantity = stockQuantity;
+    }
+}
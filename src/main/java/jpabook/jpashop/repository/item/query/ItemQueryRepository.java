@@ -0,0 +1,51 @@
+package jpabook.jpashop.repository.item.query;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+@Repository
+@RequiredArgsConstructor
+public class ItemQueryRepository {
+
+    private final EntityManager em;
+
+    /**
+     * 상품 목록. 키셋(커서) 페이징, item_id 기준.
+     * 필요한 컬럼만 DTO 로 조회하므로 엔티티를 만들지 않고, 하위 타입(Book, Album, Movie) 컬럼도 읽지 않는다.
+     * afterId가 null이면 첫 페이지.
+     */
+    public List<ItemQueryDto> findItems(Long afterId, int limit) {
+        return em.createQuery(
+            "select new jpabook.jpashop.repository.item.query.ItemQueryDto(i.id, i.name, i.price, i.stockQuantity)"+
+            " from Item i"+
+            " where i.id > :afterId"+
+            " order by i.id", ItemQueryDto.class)
+            .setParameter("afterId", afterId == null ? 0L : afterId)
+            .setMaxResults(limit)
+            .getResultList();
+    }
+
+    /**
+     * 상품명 앞부분으로 검색. (주문 화면 상품 검색)
+     * like 'prefix%' 는 item(name) 인덱스 범위 스캔으로 처리된다. ('%keyword%' 는 전체 스캔)
+     */
+    public List<ItemQueryDto> findByNamePrefix(String prefix, int limit) {
+        return em.createQuery(
+            "select new jpabook.jpashop.repository.item.query.ItemQueryDto(i.id, i.name, i.price, i.stockQuantity)"+
+            " from Item i"+
+            " where i.name like :prefix escape '!'"+
+            " order by i.name, i.id", ItemQueryDto.class)
+            .setParameter("prefix", escapeLike(prefix) + "%")
+            .setMaxResults(limit)
+            .getResultList();
+    }
+
+    private String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+}
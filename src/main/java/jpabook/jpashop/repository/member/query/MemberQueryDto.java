@@ -0,0 +1,14 @@
+package jpabook.jpashop.repository.member.query;
+
+import lombok.Data;
+
+@Data
+public class MemberQueryDto {
+    private Long memberId;
+    private String name;
+
+    public MemberQueryDto(Long memberId, String name) {
+        this.memberId = memberId;
+        this.name = name;
+    }
+}
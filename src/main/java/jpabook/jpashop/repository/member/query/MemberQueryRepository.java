@@ -0,0 +1,33 @@
+package jpabook.jpashop.repository.member.query;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+@Repository
+@RequiredArgsConstructor
+public class MemberQueryRepository {
+
+    private final EntityManager em;
+
+    /**
+     * 키셋(커서) 페이징. member_id 기준.
+     * 필요한 컬럼만 DTO 로 조회하므로 엔티티를 만들지 않고, 영속성 컨텍스트/2차 캐시에도 올라가지 않는다.
+     * where member_id > ? order by member_id 로 PK 인덱스를 타므로 몇 번째 페이지든 limit 건만 읽는다. (offset 페이징은 앞 페이지를 모두 읽고 버린다)
+     * afterId가 null이면 첫 페이지.
+     */
+    public List<MemberQueryDto> findMembers(Long afterId, int limit) {
+        return em.createQuery(
+            "select new jpabook.jpashop.repository.member.query.MemberQueryDto(m.id, m.name)"+
+            " from Member m"+
+            " where m.id > :afterId"+
+            " order by m.id", MemberQueryDto.class)
+            .setParameter("afterId", afterId == null ? 0L : afterId)
+            .setMaxResults(limit)
+            .getResultList();
+    }
+}
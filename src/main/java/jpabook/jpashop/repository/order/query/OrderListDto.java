@@ -0,0 +1,34 @@
+package jpabook.jpashop.repository.order.query;
+
+import java.time.LocalDateTime;
+
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.Data;
+
+/**
+ * 주문 목록 화면(order/orderList) 한 줄. 대표상품은 주문의 첫 번째 주문상품이다.
+ */
+@Data
+public class OrderListDto {
+    private Long orderId;
+    private String memberName;
+    private int totalPrice;
+    private int itemCount;
+    private OrderStatus status;
+    private LocalDateTime orderDate;
+
+    // 대표상품
+    private String itemName;
+    private int orderPrice;
+    private int count;
+
+    public OrderListDto(Long orderId, String memberName, int totalPrice, int itemCount, OrderStatus status,
+            LocalDateTime orderDate) {
+        this.orderId = orderId;
+        this.memberName = memberName;
+        this.totalPrice = totalPrice;
+        this.itemCount = itemCount;
+        this.status = status;
+        this.orderDate = orderDate;
+    }
+}
@@ -0,0 +1,119 @@
+package jpabook.jpashop.repository.order.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.OrderSearch.OrderSort;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 주문 목록 화면 전용 조회. 화면에 필요한 값만 DTO 로 조회하므로 뷰 렌더링 중에 지연 로딩이 일어나지 않는다.
+ * Query : 주문 + 회원 1번, 대표상품 1번.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OrderListQueryRepository {
+
+    private final EntityManager em;
+
+    /**
+     * 검색 조건에 맞는 주문을 정렬해서 offset 부터 limit 건 조회한다. 정렬이 없으면 최근 주문순.
+     * 주문 금액은 orders.total_price 컬럼을 사용하므로 order_item 을 집계하지 않는다.
+     */
+    public List<OrderListDto> findOrderList(OrderSearch orderSearch, int offset, int limit) {
+        List<String> conditions = new ArrayList<>();
+        if (orderSearch.getOrderStatus() != null) {
+            conditions.add("o.status = :status");
+        }
+        if (StringUtils.hasText(orderSearch.getMemberName())) {
+            conditions.add("m.name like :name");
+        }
+        if (orderSearch.getMinTotalPrice() != null) {
+            conditions.add("o.totalPrice >= :minTotalPrice");
+        }
+        if (orderSearch.getMaxTotalPrice() != null) {
+            conditions.add("o.totalPrice <= :maxTotalPrice");
+        }
+
+        String jpql = "select new jpabook.jpashop.repository.order.query.OrderListDto(o.id, m.name, o.totalPrice, o.itemCount, o.status, o.orderDate)"
+                + " from Order o"
+                + " join o.member m"
+                + (conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions))
+                + " order by " + orderBy(orderSearch.getSort());
+
+        TypedQuery<OrderListDto> query = em.createQuery(jpql, OrderListDto.class)
+                .setFirstResult(offset)
+                .setMaxResults(limit);
+        if (orderSearch.getOrderStatus() != null) {
+            query.setParameter("status", orderSearch.getOrderStatus());
+        }
+        if (StringUtils.hasText(orderSearch.getMemberName())) {
+            query.setParameter("name", orderSearch.getMemberName());
+        }
+        if (orderSearch.getMinTotalPrice() != null) {
+            query.setParameter("minTotalPrice", orderSearch.getMinTotalPrice());
+        }
+        if (orderSearch.getMaxTotalPrice() != null) {
+            query.setParameter("maxTotalPrice", orderSearch.getMaxTotalPrice());
+        }
+
+        List<OrderListDto> orders = query.getResultList();
+        fillRepresentativeItems(orders);
+        return orders;
+    }
+
+    /*
+     * 주문마다 첫 번째(order_item_id 가 가장 작은) 주문상품 하나만 IN 쿼리 한 번으로 조회한다.
+     * */
+    private void fillRepresentativeItems(List<OrderListDto> orders) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        List<Long> orderIds = orders.stream().map(OrderListDto::getOrderId).collect(Collectors.toList());
+        Map<Long, Object[]> firstItems = em.createQuery(
+                "select oi.order.id, i.name, oi.orderPrice, oi.count"
+                + " from OrderItem oi"
+                + " join oi.item i"
+                + " where oi.id in ("
+                + "   select min(oi2.id) from OrderItem oi2"
+                + "   where oi2.order.id in :orderIds"
+                + "   group by oi2.order.id)", Object[].class)
+                .setParameter("orderIds", orderIds)
+                .getResultList().stream()
+                .collect(Collectors.toMap(row -> (Long) row[0], Function.identity()));
+
+        for (OrderListDto order : orders) {
+            Object[] row = firstItems.get(order.getOrderId());
+            if (row != null) {
+                order.setItemName((String) row[1]);
+                order.setOrderPrice((Integer) row[2]);
+                order.setCount((Integer) row[3]);
+            }
+        }
+    }
+
+    private String orderBy(OrderSort sort) {
+        if (sort == null) {
+            sort = OrderSort.LATEST;
+        }
+        switch (sort) {
+            case TOTAL_PRICE_DESC:
+                return "o.totalPrice desc, o.id desc";
+            case TOTAL_PRICE_ASC:
+                return "o.totalPrice asc, o.id asc";
+            case LATEST:
+            default:
+                return "o.orderDate desc, o.id desc";
+        }
+    }
+}
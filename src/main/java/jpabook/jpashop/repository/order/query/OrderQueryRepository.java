@@ -1,12 +1,22 @@
 package jpabook.jpashop.repository.order.query;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import lombok.RequiredArgsConstructor;
 
@@ -16,6 +26,17 @@ public class OrderQueryRepository {
     
     private final EntityManager em;
 
+    @Value("${jpashop.query.in-chunk-size:1000}")
+    private int inChunkSize;
+
+    @PostConstruct
+    void validateChunkSize(){
+        // 0 이하인 chunk 크기는 partition 에서 끝나지 않는 루프가 된다.
+        if (inChunkSize <= 0) {
+            throw new IllegalStateException("jpashop.query.in-chunk-size 는 1 이상이어야 합니다: " + inChunkSize);
+        }
+    }
+
     public List<OrderQueryDto> findOrderQueryDtos(){
         // toOne 관계를 한번에 조회. 최적화하기 쉬우므로 한번에 조회.
         List<OrderQueryDto> result = findOrders();
@@ -45,6 +66,45 @@ public class OrderQueryRepository {
         return result;
     }
 
+    /**
+     * 스트리밍 조회. Query : chunk마다 루트는 커서에서 이어서 읽고, 컬렉션 1번.
+     * forward-only 커서로 order를 chunkSize 만큼씩 읽고, chunk 단위로 orderItem을 IN 쿼리 한 번으로 붙여서 넘긴다.
+     * 전체 결과를 메모리에 올리지 않으므로 테이블 크기와 상관없이 힙 사용량이 chunk 크기로 제한된다.
+     * 커서를 여는 동안 커넥션을 유지해야 하므로 트랜잭션 안에서 실행한다.
+     */
+    @Transactional(readOnly = true)
+    public void streamAllByDto(int chunkSize, Consumer<List<OrderQueryDto>> chunkConsumer){
+        Query<OrderQueryDto> query = em.createQuery(
+            "select new jpabook.jpashop.repository.order.query.OrderQueryDto(o.id, m.name, o.orderDate, o.status, d.address)"
+            + " from Order o"
+            + " join o.member m"
+            + " join o.delivery d"
+            + " order by o.id", OrderQueryDto.class)
+            .unwrap(Query.class);
+
+        try (ScrollableResults scroll = query
+                .setFetchSize(chunkSize)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            List<OrderQueryDto> chunk = new ArrayList<>(chunkSize);
+            while (scroll.next()) {
+                chunk.add((OrderQueryDto) scroll.get(0));
+                if (chunk.size() == chunkSize) {
+                    acceptChunk(chunk, chunkConsumer);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                acceptChunk(chunk, chunkConsumer);
+            }
+        }
+    }
+
+    private void acceptChunk(List<OrderQueryDto> chunk, Consumer<List<OrderQueryDto>> chunkConsumer){
+        Map<Long, List<OrderItemQueryDto>> orderItemMap = findOrderItemMap(toOrderIds(chunk));
+        chunk.forEach(o -> o.setOrderItems(orderItemMap.getOrDefault(o.getOrderId(), Collections.emptyList())));
+        chunkConsumer.accept(chunk);
+    }
 
     /**
      * 모든 order들의 id를 리스트로 반환.
@@ -56,19 +116,43 @@ public class OrderQueryRepository {
 
     /**
      * 각각의 order들의 orderItem을 한 번에 조회 후 Map으로 싸서 반환.
+     *
+     * id가 아주 많으면 IN절이 거대해지고 id 개수가 바뀔 때마다 실행계획을 새로 만들게 되므로,
+     * inChunkSize 단위로 잘라서 조회한다.
+     * - 마지막 chunk를 제외하면 모두 같은 크기라 같은 실행계획을 재사용한다.
+     * - 마지막 chunk는 hibernate.query.in_clause_parameter_padding 설정으로 2의 거듭제곱 크기로 맞춰진다.
+     * - chunk들은 현재 커넥션에서 순서대로 조회한다. 요청 스레드가 커넥션을 잡은 채로 chunk마다 풀에서 커넥션을 더 받으면
+     *   부하가 몰릴 때 풀이 바닥나서 서로 기다리게 된다.
      */
-    private Map<Long, List<OrderItemQueryDto>> findOrderItemMap(List<Long> orderIds){
-        List<OrderItemQueryDto> orderItems = em.createQuery(
+    public Map<Long, List<OrderItemQueryDto>> findOrderItemMap(List<Long> orderIds){
+        Map<Long, List<OrderItemQueryDto>> result = new HashMap<>();
+        partition(orderIds.stream().distinct().collect(Collectors.toList()), inChunkSize)
+            .forEach(chunk -> result.putAll(groupByOrderId(findOrderItems(chunk))));
+        return result;
+    }
+
+    private List<OrderItemQueryDto> findOrderItems(List<Long> orderIds){
+        return em.createQuery(
             "select new jpabook.jpashop.repository.order.query.OrderItemQueryDto(oi.order.id, i.name, oi.orderPrice, oi.count)"+
             " from OrderItem oi"+
             " join oi.item i"+
             " where oi.order.id in :orderIds", OrderItemQueryDto.class)
             .setParameter("orderIds", orderIds)
             .getResultList();
+    }
 
+    private Map<Long, List<OrderItemQueryDto>> groupByOrderId(List<OrderItemQueryDto> orderItems){
         return orderItems.stream().collect(Collectors.groupingBy(OrderItemQueryDto::getOrderId));
     }
 
+    private static <T> List<List<T>> partition(List<T> list, int size){
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < list.size(); i += size) {
+            chunks.add(list.subList(i, Math.min(i + size, list.size())));
+        }
+        return chunks;
+    }
+
 
     /**
      * 1:N 관계. 즉 컬렉션을 제외한 나머지를 한번에 조회
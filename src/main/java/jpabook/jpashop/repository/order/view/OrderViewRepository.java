@@ -0,0 +1,113 @@
+package jpabook.jpashop.repository.order.view;
+
+import java.util.Collection;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Repository;
+
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.OrderView;
+import lombok.RequiredArgsConstructor;
+
+@Repository
+@RequiredArgsConstructor
+public class OrderViewRepository {
+
+    private final EntityManager em;
+
+    public void save(OrderView orderView) {
+        em.persist(orderView);
+    }
+
+    public OrderView findOne(Long orderId) {
+        return em.find(OrderView.class, orderId);
+    }
+
+    /**
+     * order_view 단일 테이블만 키셋 페이징으로 조회. 조인 없음.
+     * status가 있으면 (status, order_id) 인덱스, 없으면 PK 인덱스를 탄다.
+     * 조회 전용이므로 readOnly 힌트로 스냅샷을 만들지 않는다.
+     */
+    public List<OrderView> findAll(OrderStatus status, Long afterId, int limit) {
+        String jpql = "select v from OrderView v where v.id > :afterId";
+        if (status != null) {
+            jpql += " and v.status = :status";
+        }
+        jpql += " order by v.id";
+
+        TypedQuery<OrderView> query = em.createQuery(jpql, OrderView.class)
+                .setParameter("afterId", afterId == null ? 0L : afterId)
+                .setHint(QueryHints.READ_ONLY, true)
+                .setMaxResults(limit);
+        if (status != null) {
+            query.setParameter("status", status);
+        }
+        return query.getResultList();
+    }
+
+    /**
+     * order_view 가 생기기 전에 저장된 주문의 조회 모델을 만든다. INSERT ... SELECT 한 번에 batchSize 건씩.
+     * 주문 금액/주문상품 수는 orders 컬럼이 아직 채워지지 않았을 수 있으므로 order_item 에서 다시 계산한다.
+     * 만든 행 수를 반환한다. 더 만들 주문이 없으면 0.
+     */
+    public int backfill(int batchSize) {
+        return em.createNativeQuery(
+                "insert into order_view (order_id, member_id, member_name, city, street, zipcode," +
+                " order_date, status, total_price, item_count)" +
+                " select o.order_id, m.member_id, m.name, d.city, d.street, d.zipcode, o.order_date, o.status," +
+                " (select coalesce(sum(oi.order_price * oi.count), 0) from order_item oi where oi.order_id = o.order_id)," +
+                " (select count(*) from order_item oi where oi.order_id = o.order_id)" +
+                " from orders o" +
+                " join member m on m.member_id = o.member_id" +
+                " left join delivery d on d.delivery_id = o.delivery_id" +
+                " where not exists (select 1 from order_view v where v.order_id = o.order_id)" +
+                " order by o.order_id" +
+                " limit :batchSize")
+                .setParameter("batchSize", batchSize)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(OrderView.class)
+                // 아직 flush 되지 않은 주문이 있으면 먼저 반영하도록 읽는 테이블도 지정한다.
+                .addSynchronizedEntityClass(Order.class)
+                .addSynchronizedEntityClass(OrderItem.class)
+                .executeUpdate();
+    }
+
+    /**
+     * 회원 이름이 바뀌면 해당 회원의 주문 row를 한 번에 갱신한다.
+     */
+    public int updateMemberName(Long memberId, String memberName) {
+        return em.createQuery("update OrderView v set v.memberName = :memberName where v.memberId = :memberId")
+                .setParameter("memberName", memberName)
+                .setParameter("memberId", memberId)
+                .executeUpdate();
+    }
+
+    /**
+     * 회원 이름이 바뀐 조회 모델을 회원 테이블에 맞춘다. updateMemberName 을 거치지 않고 이름을 바꿨을 때 쓴다.
+     */
+    public int syncMemberNames() {
+        return em.createNativeQuery(
+                "update order_view v set member_name = (select m.name from member m where m.member_id = v.member_id)" +
+                        " where exists (select 1 from member m where m.member_id = v.member_id and m.name <> v.member_name)")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(OrderView.class)
+                .executeUpdate();
+    }
+
+    /**
+     * 주문 상태 일괄 변경. 조회 모델이 없는 주문은 건너뛴다.
+     */
+    public int updateStatus(Collection<Long> orderIds, OrderStatus status) {
+        return em.createQuery("update OrderView v set v.status = :status where v.id in :orderIds")
+                .setParameter("status", status)
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,21 @@
+package jpabook.jpashop.repository.sales;
+
+import java.time.LocalDate;
+
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.Data;
+
+@Data
+public class SalesDailyDto {
+    private LocalDate salesDate;
+    private OrderStatus status;
+    private long orderCount;
+    private long revenue;
+
+    public SalesDailyDto(LocalDate salesDate, OrderStatus status, long orderCount, long revenue) {
+        this.salesDate = salesDate;
+        this.status = status;
+        this.orderCount = orderCount;
+        this.revenue = revenue;
+    }
+}
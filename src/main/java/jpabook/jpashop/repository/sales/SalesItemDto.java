@@ -0,0 +1,18 @@
+package jpabook.jpashop.repository.sales;
+
+import lombok.Data;
+
+@Data
+public class SalesItemDto {
+    private Long itemId;
+    private String itemName;
+    private long quantity;
+    private long revenue;
+
+    public SalesItemDto(Long itemId, String itemName, long quantity, long revenue) {
+        this.itemId = itemId;
+        this.itemName = itemName;
+        this.quantity = quantity;
+        this.revenue = revenue;
+    }
+}
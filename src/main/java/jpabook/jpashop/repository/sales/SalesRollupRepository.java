@@ -0,0 +1,214 @@
+package jpabook.jpashop.repository.sales;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Repository;
+
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.SalesDaily;
+import jpabook.jpashop.domain.SalesItemDaily;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 매출 집계 테이블(sales_daily, sales_item_daily) 갱신/조회.
+ * 갱신은 MERGE 한 번으로 행이 있으면 더하고 없으면 만든다. (select 후 insert/update 하지 않는다)
+ * 같은 행을 동시에 처음 만들어서 중복 키 오류가 나면 다시 MERGE 한다. (merge)
+ * 조회는 shard 로 나눠 쌓은 행을 합쳐서 반환한다.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class SalesRollupRepository {
+
+    private static final int MAX_MERGE_ATTEMPTS = 3;
+
+    private final EntityManager em;
+
+    public void addDaily(LocalDate salesDate, OrderStatus status, int shard, long orderCount, long revenue) {
+        merge("merge into sales_daily t" +
+                " using (select cast(? as date) sales_date, cast(? as varchar(255)) status, cast(? as int) shard) s" +
+                " on (t.sales_date = s.sales_date and t.status = s.status and t.shard = s.shard)" +
+                " when matched then update set order_count = t.order_count + ?, revenue = t.revenue + ?" +
+                " when not matched then insert (sales_date, status, shard, order_count, revenue)" +
+                " values (s.sales_date, s.status, s.shard, ?, ?)",
+                Arrays.asList(Date.valueOf(salesDate), status.name(), shard, orderCount, revenue, orderCount, revenue));
+    }
+
+    public void addItemDaily(LocalDate salesDate, Long itemId, OrderStatus status, int shard, long quantity, long revenue) {
+        merge("merge into sales_item_daily t" +
+                " using (select cast(? as date) sales_date, cast(? as bigint) item_id," +
+                " cast(? as varchar(255)) status, cast(? as int) shard) s" +
+                " on (t.sales_date = s.sales_date and t.item_id = s.item_id and t.status = s.status and t.shard = s.shard)" +
+                " when matched then update set quantity = t.quantity + ?, revenue = t.revenue + ?" +
+                " when not matched then insert (sales_date, item_id, status, shard, quantity, revenue)" +
+                " values (s.sales_date, s.item_id, s.status, s.shard, ?, ?)",
+                Arrays.asList(Date.valueOf(salesDate), itemId, status.name(), shard, quantity, revenue, quantity, revenue));
+    }
+
+    /**
+     * 주문들을 주문일별로 합쳐서 status 집계에 sign(1 또는 -1) 만큼 더한다. 주문 수와 상관없이 MERGE 한 번이다.
+     * 일괄 취소처럼 주문 엔티티를 읽지 않고 집계를 옮길 때 사용한다. 주문 금액은 저장된 total_price 를 쓴다.
+     */
+    public void addDailyFromOrders(Collection<Long> orderIds, OrderStatus status, int shard, int sign) {
+        List<Object> params = new ArrayList<>(Arrays.asList(status.name(), shard, sign, sign));
+        params.addAll(orderIds);
+        merge("merge into sales_daily t" +
+                " using (select cast(o.order_date as date) sales_date, cast(? as varchar(255)) status, cast(? as int) shard," +
+                "   cast(? as int) * count(*) order_count, cast(? as int) * sum(o.total_price) revenue" +
+                "   from orders o where o.order_id in (" + placeholders(orderIds.size()) + ")" +
+                "   group by cast(o.order_date as date)) s" +
+                " on (t.sales_date = s.sales_date and t.status = s.status and t.shard = s.shard)" +
+                " when matched then update set order_count = t.order_count + s.order_count, revenue = t.revenue + s.revenue" +
+                " when not matched then insert (sales_date, status, shard, order_count, revenue)" +
+                " values (s.sales_date, s.status, s.shard, s.order_count, s.revenue)",
+                params);
+    }
+
+    /**
+     * 주문들의 주문상품을 (주문일, 상품)별로 합쳐서 status 집계에 sign 만큼 더한다. MERGE 한 번이다.
+     */
+    public void addItemDailyFromOrders(Collection<Long> orderIds, OrderStatus status, int shard, int sign) {
+        List<Object> params = new ArrayList<>(Arrays.asList(status.name(), shard, sign, sign));
+        params.addAll(orderIds);
+        merge("merge into sales_item_daily t" +
+                " using (select cast(o.order_date as date) sales_date, oi.item_id, cast(? as varchar(255)) status," +
+                "   cast(? as int) shard, cast(? as int) * sum(oi.count) quantity," +
+                "   cast(? as int) * sum(oi.order_price * oi.count) revenue" +
+                "   from orders o join order_item oi on oi.order_id = o.order_id" +
+                "   where o.order_id in (" + placeholders(orderIds.size()) + ")" +
+                "   group by cast(o.order_date as date), oi.item_id) s" +
+                " on (t.sales_date = s.sales_date and t.item_id = s.item_id and t.status = s.status and t.shard = s.shard)" +
+                " when matched then update set quantity = t.quantity + s.quantity, revenue = t.revenue + s.revenue" +
+                " when not matched then insert (sales_date, item_id, status, shard, quantity, revenue)" +
+                " values (s.sales_date, s.item_id, s.status, s.shard, s.quantity, s.revenue)",
+                params);
+    }
+
+    /*
+     * 행이 없는 키를 두 트랜잭션이 동시에 MERGE 하면 둘 다 INSERT 로 가고, 늦은 쪽은 앞의 트랜잭션이 커밋된 뒤 중복 키 오류를 받는다.
+     * 집계 때문에 주문이 실패하면 안 되므로 savepoint 까지 되돌리고 다시 MERGE 한다. 이번에는 행이 있으므로 UPDATE 로 더해진다.
+     * JPA 쿼리에서 난 예외는 잡아도 트랜잭션이 rollback-only 가 되므로 세션의 커넥션으로 직접 실행한다.
+     * 네이티브 쿼리가 아니므로 자동 flush 가 없다. 주문을 읽는 MERGE 를 위해 먼저 flush 한다.
+     * */
+    private void merge(String sql, List<Object> params) {
+        em.flush();
+        em.unwrap(Session.class).doWork(connection -> {
+            for (int attempt = 1; ; attempt++) {
+                Savepoint savepoint = connection.setSavepoint();
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    for (int i = 0; i < params.size(); i++) {
+                        statement.setObject(i + 1, params.get(i));
+                    }
+                    statement.executeUpdate();
+                    connection.releaseSavepoint(savepoint);
+                    return;
+                } catch (SQLException e) {
+                    connection.rollback(savepoint);
+                    if (attempt >= MAX_MERGE_ATTEMPTS || !isDuplicateKey(e)) {
+                        throw e;
+                    }
+                    log.debug("[sales] rollup row created concurrently, retrying merge attempt={}", attempt);
+                }
+            }
+        });
+    }
+
+    private static boolean isDuplicateKey(SQLException e) {
+        // 23xxx: integrity constraint violation (H2 중복 키는 23505)
+        return e.getSQLState() != null && e.getSQLState().startsWith("23");
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    /**
+     * 일별/주문상태별 주문 수, 매출. sales_daily 의 기간 범위만 읽는다.
+     */
+    public List<SalesDailyDto> findDaily(LocalDate from, LocalDate to) {
+        return em.createQuery(
+                "select new jpabook.jpashop.repository.sales.SalesDailyDto(s.salesDate, s.status, sum(s.orderCount), sum(s.revenue))" +
+                " from SalesDaily s" +
+                " where s.salesDate between :from and :to" +
+                " group by s.salesDate, s.status" +
+                " order by s.salesDate, s.status", SalesDailyDto.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getResultList();
+    }
+
+    /**
+     * 기간 내 상품별 판매 수량, 매출. 매출이 큰 순서.
+     */
+    public List<SalesItemDto> findTopItems(LocalDate from, LocalDate to, OrderStatus status, int limit) {
+        return em.createQuery(
+                "select new jpabook.jpashop.repository.sales.SalesItemDto(s.itemId, i.name, sum(s.quantity), sum(s.revenue))" +
+                " from SalesItemDaily s, Item i" +
+                " where i.id = s.itemId" +
+                " and s.salesDate between :from and :to" +
+                " and s.status = :status" +
+                " group by s.itemId, i.name" +
+                " order by sum(s.revenue) desc", SalesItemDto.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .setParameter("status", status)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * 집계 테이블을 비우고 orders, order_item 에서 다시 만든다. (shard 0 에 모두 쌓는다)
+     * 증분 갱신이 어긋났을 때를 위한 복구용이다. 전체 주문을 읽으므로 한가한 시간에 실행한다.
+     * @return 만든 sales_daily, sales_item_daily 행 수
+     */
+    public int[] rebuild() {
+        em.createNativeQuery("delete from sales_daily")
+                .unwrap(NativeQuery.class).addSynchronizedEntityClass(SalesDaily.class).executeUpdate();
+        em.createNativeQuery("delete from sales_item_daily")
+                .unwrap(NativeQuery.class).addSynchronizedEntityClass(SalesItemDaily.class).executeUpdate();
+
+        int daily = em.createNativeQuery(
+                "insert into sales_daily (sales_date, status, shard, order_count, revenue)" +
+                " select cast(o.order_date as date), o.status, 0, count(*), sum(t.amount)" +
+                " from orders o" +
+                " join (select order_id, sum(order_price * count) amount from order_item group by order_id) t" +
+                " on t.order_id = o.order_id" +
+                " group by cast(o.order_date as date), o.status")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(SalesDaily.class)
+                // 아직 flush 되지 않은 주문이 있으면 먼저 반영하도록 읽는 테이블도 지정한다.
+                .addSynchronizedEntityClass(Order.class)
+                .addSynchronizedEntityClass(OrderItem.class)
+                .executeUpdate();
+
+        int items = em.createNativeQuery(
+                "insert into sales_item_daily (sales_date, item_id, status, shard, quantity, revenue)" +
+                " select cast(o.order_date as date), oi.item_id, o.status, 0, sum(oi.count), sum(oi.order_price * oi.count)" +
+                " from orders o" +
+                " join order_item oi on oi.order_id = o.order_id" +
+                " group by cast(o.order_date as date), oi.item_id, o.status")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(SalesItemDaily.class)
+                .addSynchronizedEntityClass(Order.class)
+                .addSynchronizedEntityClass(OrderItem.class)
+                .executeUpdate();
+
+        return new int[]{daily, items};
+    }
+}
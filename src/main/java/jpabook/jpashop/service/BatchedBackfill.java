@@ -0,0 +1,47 @@
+package jpabook.jpashop.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/*
+ * 스키마 변경 전에 저장된 데이터를 시작 시 채우는 백필의 공통 부분.
+ * BATCH_SIZE 건씩 별도 트랜잭션으로 커밋하고, 한 배치가 0건을 처리할 때까지 반복한다.
+ * 데이터가 많아도 긴 트랜잭션/잠금이 생기지 않고, 중간에 멈춰도 다음 실행에서 남은 것만 채운다.
+ * 하위 클래스는 backfillBatch 에서 아직 채우지 않은 것만 골라 최대 batchSize 건을 처리하고 처리한 건수를 반환한다.
+ * */
+@Slf4j
+public abstract class BatchedBackfill implements ApplicationRunner {
+
+    static final int BATCH_SIZE = 1000;
+
+    private final String target;
+    private final TransactionTemplate tx;
+
+    protected BatchedBackfill(String target, PlatformTransactionManager transactionManager) {
+        this.target = target;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    protected abstract int backfillBatch(int batchSize);
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long total = backfill();
+        if (total > 0) {
+            log.info("[backfill] {} backfilled rows={}", target, total);
+        }
+    }
+
+    public long backfill() {
+        long total = 0;
+        int updated;
+        do {
+            updated = tx.execute(status -> backfillBatch(BATCH_SIZE));
+            total += updated;
+        } while (updated > 0);
+        return total;
+    }
+}
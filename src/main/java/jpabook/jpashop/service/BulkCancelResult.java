@@ -0,0 +1,38 @@
+package jpabook.jpashop.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * 주문 일괄 취소 결과. 취소한 주문 id 와, 취소하지 못한 주문별 사유.
+ * hasMore 는 검색 조건으로 취소할 때 최대 건수에서 잘려서 조건에 맞는 주문이 더 남아 있다는 뜻이다.
+ * */
+@Getter
+public class BulkCancelResult {
+
+    private final List<Long> cancelled = new ArrayList<>();
+    private final List<Failure> failures = new ArrayList<>();
+    private boolean hasMore;
+
+    void cancelled(List<Long> orderIds) {
+        cancelled.addAll(orderIds);
+    }
+
+    void hasMore() {
+        this.hasMore = true;
+    }
+
+    void failed(Long orderId, String reason) {
+        failures.add(new Failure(orderId, reason));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Failure {
+        private final Long orderId;
+        private final String reason;
+    }
+}
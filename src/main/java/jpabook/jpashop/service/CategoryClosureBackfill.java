@@ -0,0 +1,34 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.repository.CategoryRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+
+/*
+ * category_closure 테이블이 추가되기 전에 저장된 카테고리의 클로저 행을 만든다.
+ * 클로저 행이 없으면 서브트리 상품 조회(ItemRepository.findAllInCategory)에서 그 카테고리가 빠진다.
+ * 상위 카테고리가 아직 없으면 같은 트랜잭션에서 상위부터 만든다.
+ * jpashop.category.backfill-closure=true 일 때만 등록된다.
+ * */
+@Component
+@ConditionalOnProperty(name = "jpashop.category.backfill-closure", havingValue = "true")
+public class CategoryClosureBackfill extends BatchedBackfill {
+
+    private final CategoryRepository categoryRepository;
+
+    public CategoryClosureBackfill(CategoryRepository categoryRepository, PlatformTransactionManager transactionManager) {
+        super("category_closure", transactionManager);
+        this.categoryRepository = categoryRepository;
+    }
+
+    @Override
+    protected int backfillBatch(int batchSize) {
+        List<Category> categories = categoryRepository.findWithoutClosure(batchSize);
+        categories.forEach(Category::backfillClosure);
+        return categories.size();
+    }
+}
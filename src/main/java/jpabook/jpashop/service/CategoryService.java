@@ -0,0 +1,82 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.repository.CategoryRepository;
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class CategoryService {
+
+    private final CategoryRepository categoryRepository;
+
+    private final AtomicReference<CachedTree> cache = new AtomicReference<>(new CachedTree(0, null));
+
+    /*
+     * 카테고리 추가. parentId 가 null 이면 최상위 카테고리.
+     * */
+    @Transactional
+    public Long saveCategory(String name, Long parentId) {
+        Category category = new Category();
+        category.setName(name);
+        if (parentId != null) {
+            categoryRepository.findOne(parentId).addChildCategory(category);
+        }
+        categoryRepository.save(category);
+        invalidateTree();
+        return category.getId();
+    }
+
+    @Transactional
+    public void updateName(Long id, String name) {
+        Category category = categoryRepository.findOne(id);
+        category.setName(name);
+        invalidateTree();
+    }
+
+    /*
+     * 캐시된 카테고리 트리. 없으면 쿼리 한 번으로 만든다.
+     * 캐시 hit 이면 커넥션도 쓰지 않도록 트랜잭션을 시작하지 않는다.
+     * 트리를 만드는 동안 카테고리가 바뀌면(무효화되어 cache 가 다른 객체로 바뀌면) CAS 가 실패하므로 만든 트리는 캐시하지 않는다.
+     * */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public CategoryTree getTree() {
+        CachedTree current = cache.get();
+        if (current.tree != null) {
+            return current.tree;
+        }
+        CategoryTree loaded = CategoryTree.of(categoryRepository.findAllRows());
+        cache.compareAndSet(current, new CachedTree(current.version, loaded));
+        return loaded;
+    }
+
+    /*
+     * 커밋된 뒤에 캐시를 비운다. 커밋 전에 비우면 다른 스레드가 커밋 전 데이터로 트리를 다시 만들 수 있다.
+     * */
+    private void invalidateTree() {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.updateAndGet(c -> new CachedTree(c.version + 1, null));
+            }
+        });
+    }
+
+    /*
+     * 캐시된 트리와 그 트리를 만들 때의 버전. 버전과 트리를 한 번의 CAS 로 함께 바꾼다.
+     * */
+    @AllArgsConstructor
+    private static class CachedTree {
+        private final long version;
+        private final CategoryTree tree;
+    }
+}
@@ -0,0 +1,125 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.repository.CategoryRow;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * 메모리에 올린 불변 카테고리 트리. 만든 뒤에는 SQL 없이 하위 카테고리, 서브트리, 경로(breadcrumb)를 조회한다.
+ * 노드를 전위 순회 순서로 한 배열에 두고, 노드마다 자기 서브트리의 [start, end) 구간을 기억한다.
+ * 그래서 서브트리 조회는 배열 구간 하나를 돌려주는 것으로 끝난다.
+ * 여러 스레드가 동시에 읽어도 안전하다. 카테고리가 바뀌면 고치지 않고 새로 만든다. (CategoryService)
+ * */
+public class CategoryTree {
+
+    private final Map<Long, Node> nodes;
+    private final List<Node> roots;
+    private final List<Node> preorder;
+
+    private CategoryTree(Map<Long, Node> nodes, List<Node> roots, List<Node> preorder) {
+        this.nodes = nodes;
+        this.roots = roots;
+        this.preorder = preorder;
+    }
+
+    public static CategoryTree of(List<CategoryRow> rows) {
+        Map<Long, Node> nodes = new HashMap<>();
+        for (CategoryRow row : rows) {
+            nodes.put(row.getId(), new Node(row.getId(), row.getName(), row.getParentId()));
+        }
+
+        List<Node> roots = new ArrayList<>();
+        for (CategoryRow row : rows) {
+            Node node = nodes.get(row.getId());
+            Node parent = row.getParentId() == null ? null : nodes.get(row.getParentId());
+            if (parent == null) {
+                roots.add(node);
+            } else {
+                parent.children.add(node);
+            }
+        }
+
+        List<Node> preorder = new ArrayList<>(nodes.size());
+        for (Node root : roots) {
+            visit(root, 0, preorder);
+        }
+        nodes.values().forEach(Node::freeze);
+        return new CategoryTree(Collections.unmodifiableMap(nodes), Collections.unmodifiableList(roots),
+                Collections.unmodifiableList(preorder));
+    }
+
+    private static void visit(Node node, int depth, List<Node> preorder) {
+        node.depth = depth;
+        node.start = preorder.size();
+        preorder.add(node);
+        for (Node child : node.children) {
+            visit(child, depth + 1, preorder);
+        }
+        node.end = preorder.size();
+    }
+
+    public Node get(Long id) {
+        return nodes.get(id);
+    }
+
+    public List<Node> getRoots() {
+        return roots;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /*
+     * 자신을 포함한 서브트리 전체. 전위 순회 순서.
+     * */
+    public List<Node> subtree(Long id) {
+        Node node = nodes.get(id);
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        return preorder.subList(node.start, node.end);
+    }
+
+    /*
+     * 최상위 카테고리부터 자신까지의 경로.
+     * */
+    public List<Node> breadcrumbs(Long id) {
+        List<Node> path = new ArrayList<>();
+        for (Node node = nodes.get(id); node != null; node = node.parentId == null ? null : nodes.get(node.parentId)) {
+            path.add(node);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    @Getter
+    public static class Node {
+        private final Long id;
+        private final String name;
+        private final Long parentId;
+        private int depth;
+        private List<Node> children = new ArrayList<>();
+
+        @Getter(AccessLevel.NONE)
+        private int start;
+        @Getter(AccessLevel.NONE)
+        private int end;
+
+        private Node(Long id, String name, Long parentId) {
+            this.id = id;
+            this.name = name;
+            this.parentId = parentId;
+        }
+
+        private void freeze() {
+            children = Collections.unmodifiableList(children);
+        }
+    }
+}
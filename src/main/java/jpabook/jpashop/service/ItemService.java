@@ -3,6 +3,8 @@ package jpabook.jpashop.service;
 import jpabook.jpashop.domain.item.Book;
 import jpabook.jpashop.domain.item.Item;
 import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.item.query.ItemQueryDto;
+import jpabook.jpashop.repository.item.query.ItemQueryRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -14,6 +16,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ItemService {
     private final ItemRepository itemRepository;
+    private final ItemQueryRepository itemQueryRepository;
 
     @Transactional
     public void saveItem(Item item) {
@@ -28,6 +31,7 @@ public class ItemService {
     // 파라미터가 많아지면 DTO 를 이용하면 된다.
     public void updateItem(Long itemId, String name, int price, int stockQuantity){
         // repository 에서 find 를 통해 가져온 객체는 영속상태의 객체이므로, 객체를 수정하고 별도로 save 나 merge 를 하지 않아도 된다.
+        // 2차 캐시(item region)도 READ_WRITE 전략으로 커밋 시점에 함께 갱신된다.
         Item findItem = itemRepository.findOne(itemId);
         findItem.setName(name);
         findItem.setPrice(price);
@@ -42,6 +46,13 @@ public class ItemService {
         return itemRepository.findAll();
     }
 
+    /*
+     * 상품 목록 한 페이지. 엔티티 대신 목록에 필요한 컬럼만 조회한다.
+     * */
+    public List<ItemQueryDto> findItemPage(Long afterId, int limit) {
+        return itemQueryRepository.findItems(afterId, limit);
+    }
+
     public Item findOne(Long itemId) {
         return itemRepository.findOne(itemId);
     }
@@ -0,0 +1,181 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.repository.MemberRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * 회원 이름 블룸 필터. 회원 가입 시 중복 검사를 DB 조회 없이 끝내기 위한 fast path.
+ * - mightContain 이 false 면 그 이름은 확실히 없다. true 면 있을 수도 있으므로 DB 에서 확인해야 한다.
+ * - 애플리케이션 시작 후(ApplicationReadyEvent) 전체 회원 이름으로 만든다. 만들기 전에는 항상 true 를 반환한다.
+ * - 가입/이름 변경 시 put 으로 추가한다. 삭제는 지원하지 않으므로, 바뀌기 전 이름이나 롤백된 가입은 오탐으로 남는다.
+ * - 추가된 이름 수가 용량을 넘으면 오탐률이 올라가므로 용량을 두 배로 늘려 백그라운드에서 다시 만든다.
+ * 필터를 거치지 않고 저장된 회원(DataGenerator 등)이 있어도 member.name 유니크 인덱스가 중복을 막는다.
+ * */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MemberNameFilter {
+
+    private final MemberRepository memberRepository;
+
+    @Value("${jpashop.member.name-filter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${jpashop.member.name-filter.expected-insertions:100000}")
+    private long expectedInsertions;
+
+    @Value("${jpashop.member.name-filter.fpp:0.01}")
+    private double fpp;
+
+    private volatile BloomFilter filter;
+    private final AtomicBoolean rebuilding = new AtomicBoolean(true); // 첫 필터를 만들 때까지 put 을 모아둔다
+    private final Queue<String> putsDuringRebuild = new ConcurrentLinkedQueue<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    public boolean mightContain(String name) {
+        BloomFilter current = filter;
+        return current == null || current.mightContain(name);
+    }
+
+    public void put(String name) {
+        if (!enabled) {
+            return;
+        }
+        if (rebuilding.get()) {
+            putsDuringRebuild.add(name);
+        }
+        BloomFilter current = filter;
+        if (current == null) {
+            return;
+        }
+        current.put(name);
+        if (current.isSaturated() && rebuilding.compareAndSet(false, true)) {
+            log.info("[member-name-filter] 용량 초과로 다시 만듭니다. capacity={}", current.capacity);
+            CompletableFuture.runAsync(this::rebuild);
+        }
+    }
+
+    /*
+     * 회원 이름을 모두 읽어서 새 필터를 만들고 교체한다.
+     * 읽는 동안 put 된 이름은 따로 모아두었다가 교체할 때 새 필터에 추가한다.
+     * */
+    private void rebuild() {
+        try {
+            long start = System.nanoTime();
+            long count = memberRepository.count();
+            BloomFilter next = new BloomFilter(Math.max(expectedInsertions, count * 2), fpp);
+            memberRepository.forEachName(next::put);
+
+            filter = next;
+            drainPutsDuringRebuild(next);
+            rebuilding.set(false);
+            drainPutsDuringRebuild(next);
+            log.info("[member-name-filter] members={} capacity={} bits={} hashes={} {}ms", count, next.capacity,
+                    next.bitSize, next.hashCount, (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            rebuilding.set(false);
+            putsDuringRebuild.clear();
+            log.error("[member-name-filter] 필터 생성 실패", e);
+        }
+    }
+
+    private void drainPutsDuringRebuild(BloomFilter next) {
+        String name;
+        while ((name = putsDuringRebuild.poll()) != null) {
+            next.put(name);
+        }
+    }
+
+    /*
+     * 비트 배열 하나에 hashCount 개의 해시로 비트를 세운다. (Kirsch-Mitzenmacher double hashing)
+     * 비트 배열은 AtomicLongArray 라서 락 없이 여러 스레드가 동시에 put/mightContain 할 수 있다.
+     * */
+    static class BloomFilter {
+        private final long capacity;
+        private final long bitSize;
+        private final int hashCount;
+        private final AtomicLongArray bits;
+        private final AtomicLong insertions = new AtomicLong();
+
+        BloomFilter(long capacity, double fpp) {
+            this.capacity = capacity;
+            this.bitSize = Math.max(64, (long) (-capacity * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+            this.hashCount = Math.max(1, (int) Math.round((double) bitSize / capacity * Math.log(2)));
+            this.bits = new AtomicLongArray((int) ((bitSize + 63) / 64));
+        }
+
+        void put(String name) {
+            long hash = hash(name);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long bit = index(h1 + i * h2);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long old;
+                do {
+                    old = bits.get(word);
+                } while ((old & mask) == 0 && !bits.compareAndSet(word, old, old | mask));
+            }
+            insertions.incrementAndGet();
+        }
+
+        boolean mightContain(String name) {
+            long hash = hash(name);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long bit = index(h1 + i * h2);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean isSaturated() {
+            return insertions.get() > capacity;
+        }
+
+        private long index(int combined) {
+            return (combined & Integer.MAX_VALUE) % bitSize;
+        }
+
+        /*
+         * 64비트 FNV-1a. 상위/하위 32비트를 두 개의 독립 해시로 사용한다.
+         * */
+        private static long hash(String name) {
+            long h = 0xcbf29ce484222325L;
+            for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+                h ^= b & 0xff;
+                h *= 0x100000001b3L;
+            }
+            // FNV 는 하위 비트 분산이 약하므로 섞어준다 (murmur3 fmix64)
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.repository.order.view.OrderViewRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.query.NativeQuery;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+
+/*
+ * member.name 유니크 제약(uk_member_name)을 기존 DB 에 적용한다.
+ * ddl-auto: update 는 중복 이름이 이미 있으면 제약 생성에 실패해도 경고만 남기고 넘어가므로, 제약 없이 계속 실행된다.
+ * 켜면 시작할 때 중복 이름을 정리(id 가 가장 작은 회원만 이름을 유지하고 나머지는 "이름#id")한 뒤 제약이 없으면 만든다.
+ * 실제 회원의 이름을 바꾸므로 기본값은 꺼져 있다. 기존 DB 를 올릴 때 한 번만 켜서 실행하고 다시 끈다.
+ * 제약 DDL 은 H2 문법(add constraint if not exists)이다.
+ * - 바뀐 이름은 조회 모델(order_view)에도 반영한다.
+ * - 빈 로딩 중(@PostConstruct)에 실행되므로 MemberNameFilter 가 이름을 읽기 전, DataGenerator 가 회원을 넣기 전에 끝난다.
+ * */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "jpashop.member.migrate-unique-name", havingValue = "true")
+@RequiredArgsConstructor
+public class MemberNameMigration {
+
+    private final EntityManager em;
+    private final MemberRepository memberRepository;
+    private final OrderViewRepository orderViewRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @PostConstruct
+    public void migrate() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            int renamed = memberRepository.renameDuplicateNames();
+            if (renamed > 0) {
+                int views = orderViewRepository.syncMemberNames();
+                log.warn("[member] duplicate names renamed members={} order_view={}", renamed, views);
+            }
+            // H2 문법. 이미 제약이 있으면(새 DB 는 ddl-auto 가 만든다) 아무것도 하지 않는다.
+            em.createNativeQuery("alter table member add constraint if not exists uk_member_name unique (name)")
+                    .unwrap(NativeQuery.class)
+                    .addSynchronizedQuerySpace("member")
+                    .executeUpdate();
+        });
+    }
+}
@@ -2,9 +2,11 @@ package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.repository.order.view.OrderViewRepository;
 import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -16,24 +18,43 @@ import java.util.List;
 public class MemberService {
 
     private final MemberRepository memberRepository;
+    private final OrderViewRepository orderViewRepository;
+    private final MemberNameFilter memberNameFilter;
 
     /*
      * 회원 가입
      * */
     @Transactional
     public Long join(Member member) {
-        validateDuplicateMember(member);
+        validateDuplicateMember(member.getName());
         memberRepository.save(member);
+        flushUniqueName();
+        memberNameFilter.put(member.getName());
         return member.getId();
     }
 
-    private void validateDuplicateMember(Member member) {
-        List<Member> findMembers = memberRepository.findByName(member.getName());
-        if (!findMembers.isEmpty()) {
+    /*
+     * 블룸 필터에 없는 이름은 DB 에도 없으므로 조회하지 않는다.
+     * 필터에 있는 이름만 DB 에서 확인한다. (필터 오탐이거나 실제 중복)
+     * */
+    private void validateDuplicateMember(String name) {
+        if (memberNameFilter.mightContain(name) && memberRepository.existsByName(name)) {
             throw new IllegalStateException("이미 존재하는 회원입니다.");
         }
     }
 
+    /*
+     * 같은 이름으로 동시에 가입하면 둘 다 중복 검사를 통과하고, uk_member_name 이 늦은 쪽의 INSERT 를 막는다.
+     * 커밋 시점이 아니라 여기서 flush 해서 제약 위반을 중복 회원 예외로 바꾼다.
+     * */
+    private void flushUniqueName() {
+        try {
+            memberRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalStateException("이미 존재하는 회원입니다.", e);
+        }
+    }
+
     /*
      * 회원 전체 조회
      * */
@@ -51,6 +72,13 @@ public class MemberService {
     @Transactional
     public void update(Long id, String name) {
         Member member = memberRepository.findOne(id);
+        if (!name.equals(member.getName())) {
+            validateDuplicateMember(name);
+        }
         member.setName(name);
+        flushUniqueName();
+        memberNameFilter.put(name);
+        // 조회 모델(order_view)의 회원 이름도 함께 갱신
+        orderViewRepository.updateMemberName(id, name);
     }
 }
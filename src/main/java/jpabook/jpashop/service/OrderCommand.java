@@ -0,0 +1,36 @@
+package jpabook.jpashop.service;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * 주문 한 건의 요청 값. 주문상품(OrderLine)을 여러 개 가질 수 있다.
+ * */
+@Getter
+public class OrderCommand {
+
+    private final Long memberId;
+    private final List<OrderLine> lines;
+
+    public OrderCommand(Long memberId, List<OrderLine> lines) {
+        this.memberId = memberId;
+        this.lines = lines;
+    }
+
+    public static OrderCommand of(Long memberId, Long itemId, int count) {
+        return new OrderCommand(memberId, Collections.singletonList(new OrderLine(itemId, count)));
+    }
+
+    @Getter
+    public static class OrderLine {
+        private final Long itemId;
+        private final int count;
+
+        public OrderLine(Long itemId, int count) {
+            this.itemId = itemId;
+            this.count = count;
+        }
+    }
+}
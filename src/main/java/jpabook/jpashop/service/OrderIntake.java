@@ -0,0 +1,161 @@
+package jpabook.jpashop.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/*
+ * 비동기 주문 접수 (group commit).
+ * 주문 요청을 큐에 넣고 바로 반환한다. writer 스레드가 큐에서 batchSize 개가 모이거나 maxWaitMs 가 지나면
+ * 모인 주문을 OrderService.orderBatch 로 한 트랜잭션에 저장한다. 커밋 횟수가 주문 수 / 배치 크기로 줄어든다.
+ * - 커밋이 끝난 뒤에 주문별 CompletableFuture 를 완료한다. 재고 부족 등은 해당 주문만 실패한다.
+ * - 큐가 가득 차면 기다리지 않고 RejectedExecutionException 으로 실패시킨다. (backpressure)
+ * - 배치 트랜잭션 자체가 실패하면 원인이 된 주문만 실패하도록 한 건씩 다시 저장한다.
+ * jpashop.order.intake.enabled=true 일 때만 등록된다.
+ * */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "jpashop.order.intake.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class OrderIntake {
+
+    private final OrderService orderService;
+
+    @Value("${jpashop.order.intake.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${jpashop.order.intake.batch-size:100}")
+    private int batchSize;
+
+    @Value("${jpashop.order.intake.max-wait-ms:5}")
+    private long maxWaitMs;
+
+    private BlockingQueue<PendingOrder> queue;
+    private Thread writer;
+    private volatile boolean running;
+    // running 확인과 queue.offer 를 묶는다. 나눠져 있으면 stop() 이 큐를 비운 뒤에 들어온 주문은 영원히 완료되지 않는다.
+    private final Object submitLock = new Object();
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writer = new Thread(this::drain, "order-intake-writer");
+        writer.start();
+    }
+
+    /*
+     * 종료 시 새 주문은 받지 않고, 큐에 남은 주문은 모두 저장한 뒤 writer 를 종료한다.
+     * */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        synchronized (submitLock) {
+            running = false;
+        }
+        writer.join();
+        // 종료 직전에 들어온 주문
+        List<PendingOrder> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        rest.forEach(p -> p.future.completeExceptionally(new RejectedExecutionException("주문 접수가 종료되었습니다.")));
+    }
+
+    public CompletableFuture<Long> submit(OrderCommand command) {
+        PendingOrder pending = new PendingOrder(command);
+        synchronized (submitLock) {
+            if (!running) {
+                pending.future.completeExceptionally(new RejectedExecutionException("주문 접수가 종료되었습니다."));
+            } else if (!queue.offer(pending)) {
+                pending.future.completeExceptionally(new RejectedExecutionException("주문 접수 대기열이 가득 찼습니다."));
+            }
+        }
+        return pending.future;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void drain() {
+        List<PendingOrder> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // batchSize 만큼 모이거나 maxWaitMs 가 지날 때까지 모은다
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingOrder next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                commit(batch);
+            } catch (InterruptedException e) {
+                // 모으던 주문은 저장하지 않았으므로 실패로 완료한다. 큐에 남은 주문은 stop() 에서 실패시킨다.
+                batch.forEach(p -> p.future.completeExceptionally(new RejectedExecutionException("주문 접수가 중단되었습니다.")));
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("[order-intake] 배치 처리 실패", e);
+                batch.forEach(p -> p.future.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingOrder> batch) {
+        List<OrderResult> results;
+        try {
+            results = orderService.orderBatch(batch.stream().map(p -> p.command).collect(Collectors.toList()));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            log.warn("[order-intake] 배치 트랜잭션 실패, 한 건씩 다시 저장합니다. size={}", batch.size(), e);
+            batch.forEach(p -> commit(Collections.singletonList(p)));
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            OrderResult result = results.get(i);
+            CompletableFuture<Long> future = batch.get(i).future;
+            if (result.isSuccess()) {
+                future.complete(result.getOrderId());
+            } else {
+                future.completeExceptionally(result.getException());
+            }
+        }
+    }
+
+    private static class PendingOrder {
+        private final OrderCommand command;
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        PendingOrder(OrderCommand command) {
+            this.command = command;
+        }
+    }
+}
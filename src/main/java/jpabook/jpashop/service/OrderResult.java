@@ -0,0 +1,34 @@
+package jpabook.jpashop.service;
+
+import lombok.Getter;
+
+/*
+ * 주문 한 건의 처리 결과. 성공이면 orderId, 실패면 exception 이 채워진다.
+ * */
+@Getter
+public class OrderResult {
+
+    private final Long orderId;
+    private final RuntimeException exception;
+
+    private OrderResult(Long orderId, RuntimeException exception) {
+        this.orderId = orderId;
+        this.exception = exception;
+    }
+
+    public static OrderResult success(Long orderId) {
+        return new OrderResult(orderId, null);
+    }
+
+    public static OrderResult failure(RuntimeException exception) {
+        return new OrderResult(null, exception);
+    }
+
+    public boolean isSuccess() {
+        return exception == null;
+    }
+
+    public String getError() {
+        return exception == null ? null : exception.getMessage();
+    }
+}
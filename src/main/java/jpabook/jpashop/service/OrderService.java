@@ -1,28 +1,54 @@
 package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.DeliveryStatus;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.OrderView;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.NotEnoughStockException;
 import jpabook.jpashop.repository.ItemRepository;
 import jpabook.jpashop.repository.MemberRepository;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.OrderStatusRow;
+import jpabook.jpashop.repository.order.query.OrderListDto;
+import jpabook.jpashop.repository.order.query.OrderListQueryRepository;
+import jpabook.jpashop.repository.order.view.OrderViewRepository;
+import jpabook.jpashop.service.OrderCommand.OrderLine;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional(readOnly = true)
 @RequiredArgsConstructor
 public class OrderService {
 
+    // 일괄 취소 시 IN 목록 크기. 주문을 이 크기로 나눠서 잠그고 갱신한다.
+    private static final int CANCEL_CHUNK_SIZE = 1000;
+    // 한 번에 일괄 취소할 최대 주문 수 (검색 조건, 주문 id 목록 모두)
+    public static final int MAX_BULK_CANCEL = 10_000;
+    // 여러 건 주문 요청 하나에 담을 수 있는 최대 주문 수. 모두 한 트랜잭션에서 저장하므로 크기를 제한한다.
+    public static final int MAX_BATCH_ORDERS = 1000;
+
     private final OrderRepository orderRepository;
     private final MemberRepository memberRepository;
     private final ItemRepository itemRepository;
+    private final OrderViewRepository orderViewRepository;
+    private final OrderListQueryRepository orderListQueryRepository;
+    private final SalesService salesService;
 
     // 주문
     @Transactional
@@ -35,24 +61,218 @@ public class OrderService {
         Delivery delivery = new Delivery();
         delivery.setAddress(member.getAddress());
 
+        // 재고 차감. 조건부 UPDATE 로 처리하므로 동시에 주문해도 재고가 유실되지 않는다.
+        if (!itemRepository.removeStock(item, count)) {
+            throw new NotEnoughStockException("need more stock");
+        }
+
         // 주문 상품 생성
-        OrderItem orderItem = OrderItem.createOrderItem(item, item.getPrice(), count);
+        OrderItem orderItem = OrderItem.createReservedOrderItem(item, item.getPrice(), count);
 
         // 주문 생성
         Order order = Order.createOrder(member, delivery, orderItem);
 
         // 주문 저장
-        orderRepository.save(order);
+        saveOrder(order);
+        // 매출 집계
+        salesService.recordOrders(Collections.singletonList(order));
         return order.getId();
     }
 
-    // 취소
+    /*
+     * 여러 건 주문. 주문마다 주문상품을 여러 개 가질 수 있다.
+     * - 회원과 상품은 IN 쿼리 한 번씩으로 모두 조회한다.
+     * - 재고는 주문마다 조건부 UPDATE 로 차감한다. 한 주문의 일부 상품만 재고가 부족하면 그 주문에서 차감한 재고를 되돌린다.
+     * - 주문은 모두 한 트랜잭션에서 저장하고, INSERT 는 커밋 시점에 JDBC 배치로 묶인다. (hibernate.jdbc.batch_size)
+     * 주문 하나가 실패해도 다른 주문은 저장되며, 요청 순서대로 주문별 결과를 반환한다.
+     * */
+    @Transactional
+    public List<OrderResult> orderBatch(List<OrderCommand> commands) {
+        // 엔티티 조회
+        Map<Long, Member> members = memberRepository.findByIds(commands.stream()
+                .map(OrderCommand::getMemberId).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(Member::getId, m -> m));
+        Map<Long, Item> items = itemRepository.findByIds(commands.stream()
+                .flatMap(c -> c.getLines().stream()).map(OrderLine::getItemId).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(Item::getId, i -> i));
+
+        // 재고 차감
+        List<OrderResult> results = new ArrayList<>();
+        List<Order> orders = new ArrayList<>();
+        for (OrderCommand command : commands) {
+            RuntimeException error = reserveStock(command, members, items);
+            if (error != null) {
+                results.add(OrderResult.failure(error));
+                orders.add(null);
+                continue;
+            }
+            orders.add(createOrder(command, members, items));
+            results.add(null);
+        }
+
+        // 주문 저장. 저장을 마지막에 몰아서 해야 INSERT 가 재고 UPDATE 사이에 끊기지 않고 배치로 묶인다.
+        List<Order> saved = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            if (order != null) {
+                saveOrder(order);
+                saved.add(order);
+                results.set(i, OrderResult.success(order.getId()));
+            }
+        }
+        // 매출 집계는 배치 전체를 합쳐서 한 번에 갱신
+        salesService.recordOrders(saved);
+        return results;
+    }
+
+    /*
+     * 주문 하나의 재고를 차감한다. 실패하면 이미 차감한 재고를 되돌리고 실패 사유를 예외로 반환한다. (던지지 않는다)
+     * 조건부 UPDATE 로 DB 에서 바로 차감하므로, 영속성 컨텍스트의 Item 은 변경하지 않는다.
+     * */
+    private RuntimeException reserveStock(OrderCommand command, Map<Long, Member> members, Map<Long, Item> items) {
+        if (!members.containsKey(command.getMemberId())) {
+            return new IllegalArgumentException("존재하지 않는 회원입니다. memberId=" + command.getMemberId());
+        }
+        if (command.getLines() == null || command.getLines().isEmpty()) {
+            return new IllegalArgumentException("주문상품이 없습니다.");
+        }
+        for (OrderLine line : command.getLines()) {
+            if (!items.containsKey(line.getItemId())) {
+                return new IllegalArgumentException("존재하지 않는 상품입니다. itemId=" + line.getItemId());
+            }
+            if (line.getCount() <= 0) {
+                return new IllegalArgumentException("주문수량은 1개 이상이어야 합니다. itemId=" + line.getItemId());
+            }
+        }
+
+        // 같은 상품은 수량을 합치고 item_id 순서로 차감한다.
+        // 여러 트랜잭션이 같은 상품들을 요청마다 다른 순서로 잠그면 서로의 행 잠금을 기다리는 교착 상태가 생긴다.
+        Map<Long, Integer> quantities = command.getLines().stream()
+                .collect(Collectors.toMap(OrderLine::getItemId, OrderLine::getCount, Integer::sum, TreeMap::new));
+
+        List<Map.Entry<Long, Integer>> reserved = new ArrayList<>();
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            if (!itemRepository.removeStock(line.getKey(), line.getValue())) {
+                reserved.forEach(r -> itemRepository.addStock(r.getKey(), r.getValue()));
+                return new NotEnoughStockException("재고가 부족합니다. itemId=" + line.getKey());
+            }
+            reserved.add(line);
+        }
+        return null;
+    }
+
+    private Order createOrder(OrderCommand command, Map<Long, Member> members, Map<Long, Item> items) {
+        Member member = members.get(command.getMemberId());
+
+        Delivery delivery = new Delivery();
+        delivery.setAddress(member.getAddress());
+
+        OrderItem[] orderItems = command.getLines().stream()
+                .map(line -> {
+                    Item item = items.get(line.getItemId());
+                    return OrderItem.createReservedOrderItem(item, item.getPrice(), line.getCount());
+                })
+                .toArray(OrderItem[]::new);
+
+        return Order.createOrder(member, delivery, orderItems);
+    }
+
+    /*
+     * 주문과 조회 모델을 함께 저장한다.
+     * */
+    private void saveOrder(Order order) {
+        orderRepository.save(order);
+        orderViewRepository.save(OrderView.createOrderView(order));
+    }
+
+    /*
+     * 취소. 일괄 취소와 같은 경로(cancelChunk)로 주문 행을 잠그고 상태를 확인한다.
+     * 단건 취소와 일괄 취소가 같은 주문을 동시에 취소해도 한쪽만 재고를 복구하고 매출 집계를 옮긴다.
+     * 취소할 수 없는 주문(없는 주문, 이미 취소된 주문, 배송완료된 주문)이면 IllegalStateException.
+     * 벌크 UPDATE 를 쓰므로 영속성 컨텍스트를 비운다. 이전에 읽은 엔티티는 다시 조회해서 쓴다.
+     * */
     @Transactional
     public void cancelOrder(Long orderId) {
-        // 주문 엔티티 조회
-        Order order = orderRepository.findOne(orderId);
-        // 주문 취소
-        order.cancel();
+        BulkCancelResult result = new BulkCancelResult();
+        cancelChunk(Collections.singletonList(orderId), result);
+        orderRepository.clear();
+        if (!result.getFailures().isEmpty()) {
+            throw new IllegalStateException(result.getFailures().get(0).getReason());
+        }
+    }
+
+    /*
+     * 주문 일괄 취소. 주문 엔티티를 읽지 않고 주문 CANCEL_CHUNK_SIZE 건마다 아래 쿼리만 실행한다.
+     * 1. 주문과 배송 상태를 잠그면서 읽고, 없는 주문/이미 취소된 주문/배송완료된 주문은 사유와 함께 건너뛴다.
+     * 2. 매출 집계 MERGE, 주문 상태 UPDATE, 상품별로 합친 재고 UPDATE, 조회 모델 UPDATE 를 한 번씩 실행한다.
+     * 벌크 UPDATE 는 영속성 컨텍스트를 거치지 않으므로 마지막에 영속성 컨텍스트를 비운다.
+     * 이 메서드 전에 읽은 주문, 상품 엔티티는 준영속 상태가 되므로 다시 조회해서 쓴다.
+     * */
+    @Transactional
+    public BulkCancelResult cancelOrders(Collection<Long> orderIds) {
+        BulkCancelResult result = new BulkCancelResult();
+        if (orderIds.isEmpty()) {
+            return result;
+        }
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(orderIds));
+        for (int from = 0; from < ids.size(); from += CANCEL_CHUNK_SIZE) {
+            cancelChunk(ids.subList(from, Math.min(from + CANCEL_CHUNK_SIZE, ids.size())), result);
+        }
+        orderRepository.clear();
+        return result;
+    }
+
+    /*
+     * 검색 조건에 맞는 주문 일괄 취소. 최대 MAX_BULK_CANCEL 건. 이미 취소된 주문은 제외하고 찾는다.
+     * 조건에 맞는 주문이 더 남아 있으면 결과의 hasMore 가 true 이다. 취소된 주문은 다시 찾지 않으므로 호출자는 같은 조건으로 반복하면 된다.
+     * */
+    @Transactional
+    public BulkCancelResult cancelOrders(OrderSearch orderSearch) {
+        if (orderSearch.getOrderStatus() == OrderStatus.CANCEL) {
+            return new BulkCancelResult();
+        }
+        OrderSearch search = new OrderSearch();
+        search.setMemberName(orderSearch.getMemberName());
+        search.setOrderStatus(OrderStatus.ORDER);
+        search.setMinTotalPrice(orderSearch.getMinTotalPrice());
+        search.setMaxTotalPrice(orderSearch.getMaxTotalPrice());
+        // 남은 주문이 있는지 알 수 있도록 한 건 더 조회한다.
+        List<Long> orderIds = orderRepository.findIds(search, MAX_BULK_CANCEL + 1);
+        boolean hasMore = orderIds.size() > MAX_BULK_CANCEL;
+        BulkCancelResult result = cancelOrders(hasMore ? orderIds.subList(0, MAX_BULK_CANCEL) : orderIds);
+        if (hasMore) {
+            result.hasMore();
+        }
+        return result;
+    }
+
+    private void cancelChunk(List<Long> orderIds, BulkCancelResult result) {
+        Map<Long, OrderStatusRow> rows = orderRepository.lockForCancel(orderIds).stream()
+                .collect(Collectors.toMap(OrderStatusRow::getOrderId, r -> r));
+
+        List<Long> targets = new ArrayList<>();
+        for (Long orderId : orderIds) {
+            OrderStatusRow row = rows.get(orderId);
+            if (row == null) {
+                result.failed(orderId, "존재하지 않는 주문입니다.");
+            } else if (row.getStatus() == OrderStatus.CANCEL) {
+                result.failed(orderId, "이미 취소된 주문입니다.");
+            } else if (row.getDeliveryStatus() == DeliveryStatus.COMP) {
+                result.failed(orderId, "이미 배송완료된 상품은 취소가 불가능합니다.");
+            } else {
+                targets.add(orderId);
+            }
+        }
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        // 매출 집계는 상태를 바꾸기 전의 주문으로 옮긴다.
+        salesService.recordCancels(targets);
+        orderRepository.updateStatus(targets, OrderStatus.CANCEL);
+        itemRepository.restoreStock(targets);
+        orderViewRepository.updateStatus(targets, OrderStatus.CANCEL);
+        result.cancelled(targets);
     }
 
 
@@ -60,4 +280,11 @@ public class OrderService {
     public List<Order> findOrders(OrderSearch orderSearch) {
         return orderRepository.findAllByString(orderSearch);
     }
+
+    /*
+     * 주문 목록 화면. page 는 0 부터. 다음 페이지가 있는지 알 수 있도록 size + 1 건까지 조회한다.
+     * */
+    public List<OrderListDto> findOrderPage(OrderSearch orderSearch, int page, int size) {
+        return orderListQueryRepository.findOrderList(orderSearch, page * size, size + 1);
+    }
 }
@@ -0,0 +1,27 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.repository.OrderRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/*
+ * orders.total_price, item_count 컬럼이 추가되기 전에 저장된 주문을 채운다.
+ * jpashop.order.backfill-totals=true 일 때만 등록된다.
+ * */
+@Component
+@ConditionalOnProperty(name = "jpashop.order.backfill-totals", havingValue = "true")
+public class OrderTotalsBackfill extends BatchedBackfill {
+
+    private final OrderRepository orderRepository;
+
+    public OrderTotalsBackfill(OrderRepository orderRepository, PlatformTransactionManager transactionManager) {
+        super("orders.total_price/item_count", transactionManager);
+        this.orderRepository = orderRepository;
+    }
+
+    @Override
+    protected int backfillBatch(int batchSize) {
+        return orderRepository.backfillTotals(batchSize);
+    }
+}
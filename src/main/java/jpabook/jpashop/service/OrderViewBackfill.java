@@ -0,0 +1,27 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.repository.order.view.OrderViewRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/*
+ * order_view 가 생기기 전에 저장된 주문의 조회 모델을 만든다. 만들지 않으면 /api/v6/orders 에 나오지 않는다.
+ * jpashop.order.backfill-view=true 일 때만 등록된다.
+ * */
+@Component
+@ConditionalOnProperty(name = "jpashop.order.backfill-view", havingValue = "true")
+public class OrderViewBackfill extends BatchedBackfill {
+
+    private final OrderViewRepository orderViewRepository;
+
+    public OrderViewBackfill(OrderViewRepository orderViewRepository, PlatformTransactionManager transactionManager) {
+        super("order_view", transactionManager);
+        this.orderViewRepository = orderViewRepository;
+    }
+
+    @Override
+    protected int backfillBatch(int batchSize) {
+        return orderViewRepository.backfill(batchSize);
+    }
+}
@@ -0,0 +1,138 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.sales.SalesDailyDto;
+import jpabook.jpashop.repository.sales.SalesItemDto;
+import jpabook.jpashop.repository.sales.SalesRollupRepository;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * 매출 집계. 주문/취소할 때 집계 테이블을 증분 갱신하고, 리포트는 집계 테이블에서만 읽는다.
+ * 주문 테이블을 스캔하지 않으므로 리포트 비용은 주문 수가 아니라 기간(일 수 x 상태 x shard)에 비례한다.
+ * */
+@Slf4j
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class SalesService {
+
+    private final SalesRollupRepository salesRollupRepository;
+
+    @Value("${jpashop.sales.shards:8}")
+    private int shards;
+
+    /*
+     * 새 주문을 집계에 더한다. 여러 주문이면 (날짜, 상태), (날짜, 상품, 상태)별로 먼저 합친 뒤 키마다 MERGE 한 번씩만 실행한다.
+     * */
+    @Transactional
+    public void recordOrders(Collection<Order> orders) {
+        SalesDelta delta = new SalesDelta();
+        for (Order order : orders) {
+            delta.add(order, order.getStatus(), 1);
+        }
+        apply(delta);
+    }
+
+    /*
+     * 여러 주문 취소. 주문 엔티티를 읽지 않고 orders, order_item 에서 바로 합쳐서 옮긴다.
+     * 상태를 CANCEL 로 바꾸기 전에 호출한다. orderIds 는 모두 ORDER 상태여야 한다.
+     * */
+    @Transactional
+    public void recordCancels(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        int shard = ThreadLocalRandom.current().nextInt(shards);
+        salesRollupRepository.addDailyFromOrders(orderIds, OrderStatus.ORDER, shard, -1);
+        salesRollupRepository.addDailyFromOrders(orderIds, OrderStatus.CANCEL, shard, 1);
+        salesRollupRepository.addItemDailyFromOrders(orderIds, OrderStatus.ORDER, shard, -1);
+        salesRollupRepository.addItemDailyFromOrders(orderIds, OrderStatus.CANCEL, shard, 1);
+    }
+
+    public List<SalesDailyDto> findDaily(LocalDate from, LocalDate to) {
+        return salesRollupRepository.findDaily(from, to);
+    }
+
+    public List<SalesItemDto> findTopItems(LocalDate from, LocalDate to, OrderStatus status, int limit) {
+        return salesRollupRepository.findTopItems(from, to, status, limit);
+    }
+
+    /*
+     * 집계 테이블 전체 재생성. 증분 갱신이 어긋났을 때의 복구용이다.
+     * jpashop.sales.rebuild-cron 을 지정하면 주기적으로 실행한다. (기본값 "-" 는 실행하지 않음)
+     * */
+    @Transactional
+    @Scheduled(cron = "${jpashop.sales.rebuild-cron:-}")
+    public void rebuild() {
+        long start = System.nanoTime();
+        int[] rows = salesRollupRepository.rebuild();
+        log.info("[sales] rollup rebuilt sales_daily={} sales_item_daily={} {}ms",
+                rows[0], rows[1], (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /*
+     * 같은 날의 주문이 한 행에 몰리지 않도록 트랜잭션마다 shard 를 골라서 쌓는다.
+     * */
+    private void apply(SalesDelta delta) {
+        int shard = ThreadLocalRandom.current().nextInt(shards);
+        delta.daily.forEach((key, v) ->
+                salesRollupRepository.addDaily(key.getSalesDate(), key.getStatus(), shard, v[0], v[1]));
+        delta.items.forEach((key, v) ->
+                salesRollupRepository.addItemDaily(key.getSalesDate(), key.getItemId(), key.getStatus(), shard, v[0], v[1]));
+    }
+
+    private static class SalesDelta {
+        // {주문 수, 매출}
+        private final Map<DailyKey, long[]> daily = new LinkedHashMap<>();
+        // {수량, 매출}
+        private final Map<ItemKey, long[]> items = new LinkedHashMap<>();
+
+        void add(Order order, OrderStatus status, int sign) {
+            LocalDate salesDate = order.getOrderDate().toLocalDate();
+            long[] d = daily.computeIfAbsent(new DailyKey(salesDate, status), k -> new long[2]);
+            d[0] += sign;
+            d[1] += (long) sign * order.getTotalPrice();
+
+            for (OrderItem orderItem : order.getOrderItems()) {
+                Long itemId = orderItem.getItem().getId();
+                long[] i = items.computeIfAbsent(new ItemKey(salesDate, itemId, status), k -> new long[2]);
+                i[0] += (long) sign * orderItem.getCount();
+                i[1] += (long) sign * orderItem.getTotalPrice();
+            }
+        }
+    }
+
+    @Getter
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class DailyKey {
+        private final LocalDate salesDate;
+        private final OrderStatus status;
+    }
+
+    @Getter
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class ItemKey {
+        private final LocalDate salesDate;
+        private final Long itemId;
+        private final OrderStatus status;
+    }
+}
@@ -0,0 +1,106 @@
+package jpabook.jpashop.api;
+
+import com.jayway.jsonpath.JsonPath;
+import jpabook.jpashop.domain.item.Book;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class ItemApiControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    EntityManager em;
+
+    @Test
+    public void 카테고리상품_알수없는_타입은_400() throws Exception {
+        mockMvc.perform(get("/api/categories/1/items").param("type", "Shoe"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void 상품목록_nextCursor로_다음페이지() throws Exception {
+        //given
+        Long first = createBook("목록A").getId();
+        Long second = createBook("목록B").getId();
+        Long third = createBook("목록C").getId();
+        em.flush();
+        em.clear();
+
+        //when 응답의 nextCursor 를 after 로 넘기면서 third 를 지날 때까지 2건씩 넘긴다
+        List<Long> walked = new ArrayList<>();
+        String cursor = String.valueOf(first - 1);
+        while (!walked.contains(third)) {
+            assertNotNull("third 에 닿기 전에 마지막 페이지가 되면 안 된다.", cursor);
+            String body = mockMvc.perform(get("/api/items").param("after", cursor).param("limit", "2"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            List<Number> ids = JsonPath.read(body, "$.data[*].itemId");
+            ids.forEach(id -> walked.add(id.longValue()));
+            cursor = JsonPath.read(body, "$.nextCursor");
+        }
+
+        //then
+        assertEquals(Arrays.asList(first, second, third), walked.stream()
+                .filter(id -> id.equals(first) || id.equals(second) || id.equals(third))
+                .collect(Collectors.toList()));
+        assertEquals("id 순서대로, 중복 없이 이어져야 한다.",
+                walked.stream().distinct().sorted().collect(Collectors.toList()), walked);
+    }
+
+    @Test
+    public void 상품검색_LIKE_특수문자와_limit() throws Exception {
+        //given
+        String prefix = "검색" + System.nanoTime();
+        createBook(prefix + "50%");
+        createBook(prefix + "500");
+        createBook(prefix + "a_1");
+        createBook(prefix + "ab1");
+        em.flush();
+        em.clear();
+
+        //when then
+        mockMvc.perform(get("/api/items/lookup").param("q", prefix + "50%"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[*].name", contains(prefix + "50%")));
+        mockMvc.perform(get("/api/items/lookup").param("q", prefix + "a_"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[*].name", contains(prefix + "a_1")));
+        mockMvc.perform(get("/api/items/lookup").param("q", prefix).param("limit", "0"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(1));
+    }
+
+    private Book createBook(String name) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        em.persist(book);
+        return book;
+    }
+}
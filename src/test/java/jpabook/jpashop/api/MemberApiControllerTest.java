@@ -0,0 +1,89 @@
+package jpabook.jpashop.api;
+
+import com.jayway.jsonpath.JsonPath;
+import jpabook.jpashop.domain.Member;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class MemberApiControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    EntityManager em;
+
+    @Test
+    public void 회원목록_nextCursor로_다음페이지() throws Exception {
+        //given
+        Long first = createMember().getId();
+        Long second = createMember().getId();
+        Long third = createMember().getId();
+        em.flush();
+        em.clear();
+
+        //when 응답의 nextCursor 를 after 로 넘기면서 third 를 지날 때까지 2건씩 넘긴다
+        List<Long> walked = new ArrayList<>();
+        String cursor = String.valueOf(first - 1);
+        while (!walked.contains(third)) {
+            assertNotNull("third 에 닿기 전에 마지막 페이지가 되면 안 된다.", cursor);
+            String body = mockMvc.perform(get("/api/v3/members").param("after", cursor).param("limit", "2"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            List<Number> ids = JsonPath.read(body, "$.data[*].memberId");
+            ids.forEach(id -> walked.add(id.longValue()));
+            cursor = JsonPath.read(body, "$.nextCursor");
+        }
+
+        //then
+        assertEquals(Arrays.asList(first, second, third), walked.stream()
+                .filter(id -> id.equals(first) || id.equals(second) || id.equals(third))
+                .collect(Collectors.toList()));
+        assertEquals("id 순서대로, 중복 없이 이어져야 한다.",
+                walked.stream().distinct().sorted().collect(Collectors.toList()), walked);
+    }
+
+    @Test
+    public void 회원목록_limit_범위보정() throws Exception {
+        //given
+        Long memberId = createMember().getId();
+        em.flush();
+        em.clear();
+
+        //when then limit 0 은 1건으로 보정되고, 꽉 찬 페이지이므로 다음 커서가 있다
+        mockMvc.perform(get("/api/v3/members").param("after", String.valueOf(memberId - 1)).param("limit", "0"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(1))
+                .andExpect(jsonPath("$.data[0].memberId").value(memberId))
+                .andExpect(jsonPath("$.nextCursor").value(String.valueOf(memberId)));
+    }
+
+    private Member createMember() {
+        Member member = new Member();
+        member.setName("목록회원-" + System.nanoTime());
+        em.persist(member);
+        return member;
+    }
+}
@@ -0,0 +1,204 @@
+package jpabook.jpashop.api;
+
+import com.jayway.jsonpath.JsonPath;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.repository.OrderCursor;
+import jpabook.jpashop.service.OrderService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class OrderApiControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    EntityManager em;
+
+    @Test
+    public void 일괄취소_조건없으면_거절() throws Exception {
+        mockMvc.perform(post("/api/orders/cancel")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void 일괄취소_빈목록은_아무것도_하지않음() throws Exception {
+        mockMvc.perform(post("/api/orders/cancel")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"orderIds\":[]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.cancelled").isEmpty())
+                .andExpect(jsonPath("$.data.failures").isEmpty())
+                .andExpect(jsonPath("$.data.hasMore").value(false));
+    }
+
+    @Test
+    public void 일괄취소_주문id_최대건수() throws Exception {
+        String orderIds = LongStream.rangeClosed(1, OrderService.MAX_BULK_CANCEL + 1)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(","));
+        mockMvc.perform(post("/api/orders/cancel")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"orderIds\":[" + orderIds + "]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void 커서조회_페이지를_넘겨도_빠지거나_중복되는_주문이_없음() throws Exception {
+        //given 주문시간이 같은 주문을 섞어서 만든다. 다른 테스트가 남긴 주문보다 뒤에 오도록 먼 미래 시간을 쓴다.
+        LocalDateTime base = LocalDateTime.of(2999, 1, 1, 0, 0);
+        Member member = createMember();
+        Long first = createOrder(member, base).getId();
+        Long second = createOrder(member, base).getId();
+        Long third = createOrder(member, base).getId();
+        Long fourth = createOrder(member, base.plusSeconds(1)).getId();
+        em.flush();
+        em.clear();
+
+        //when 마지막 페이지까지 2건씩 넘긴다
+        List<Long> orderIds = new ArrayList<>();
+        String cursor = new OrderCursor(base.minusSeconds(1), 0L).encode();
+        int pages = 0;
+        while (cursor != null) {
+            MvcResult result = mockMvc.perform(get("/api/v3.2/orders").param("cursor", cursor).param("limit", "2"))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            String body = result.getResponse().getContentAsString();
+            List<Number> ids = JsonPath.read(body, "$.data[*].orderId");
+            ids.forEach(id -> orderIds.add(id.longValue()));
+            cursor = JsonPath.read(body, "$.nextCursor");
+            pages++;
+        }
+
+        //then
+        assertEquals(Arrays.asList(first, second, third, fourth), orderIds);
+        assertEquals("꽉 찬 페이지 2개 뒤에 빈 마지막 페이지가 온다.", 3, pages);
+    }
+
+    @Test
+    public void 커서조회_limit_범위보정() throws Exception {
+        //given
+        LocalDateTime base = LocalDateTime.of(2999, 1, 1, 0, 0);
+        Member member = createMember();
+        Long first = createOrder(member, base).getId();
+        createOrder(member, base);
+        em.flush();
+        em.clear();
+        String cursor = new OrderCursor(base.minusSeconds(1), 0L).encode();
+
+        //when
+        MvcResult result = mockMvc.perform(get("/api/v3.2/orders").param("cursor", cursor).param("limit", "0"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        //then limit 0 은 1건으로 보정되고, 다음 커서가 있어야 한다
+        String body = result.getResponse().getContentAsString();
+        assertEquals(first.longValue(), ((Number) JsonPath.read(body, "$.data[0].orderId")).longValue());
+        assertEquals(1, (int) JsonPath.<Integer>read(body, "$.data.length()"));
+        String next = JsonPath.read(body, "$.nextCursor");
+        assertNotNull(next);
+        assertEquals(first, OrderCursor.decode(next).getOrderId());
+    }
+
+    @Test
+    public void 커서조회_잘못된_커서는_400() throws Exception {
+        mockMvc.perform(get("/api/v3.2/orders").param("cursor", "잘못된커서"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v3.2/orders").param("cursor", "MjAyMQ"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void 필드선택조회_limit_범위보정() throws Exception {
+        mockMvc.perform(get("/api/v7/orders").param("limit", "0"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(lessThanOrEqualTo(1)));
+        mockMvc.perform(get("/api/v7/orders").param("expand", "items").param("limit", "100000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(lessThanOrEqualTo(500)));
+    }
+
+    @Test
+    public void 여러건주문_주문상품_검증() throws Exception {
+        mockMvc.perform(post("/api/orders/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"orders\":[{\"memberId\":1,\"items\":[{\"count\":1}]}]}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/orders/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"orders\":[{\"memberId\":1,\"items\":[{\"itemId\":1,\"count\":0}]}]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void 여러건주문_최대건수() throws Exception {
+        String orders = IntStream.rangeClosed(1, OrderService.MAX_BATCH_ORDERS + 1)
+                .mapToObj(i -> "{\"memberId\":1,\"items\":[{\"itemId\":1,\"count\":1}]}")
+                .collect(Collectors.joining(","));
+        mockMvc.perform(post("/api/orders/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"orders\":[" + orders + "]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void SQL_수_헤더() throws Exception {
+        mockMvc.perform(get("/api/v6/orders").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Sql-Count", "1"))
+                .andExpect(header().exists("X-Sql-Time-Ms"))
+                .andExpect(header().exists("X-Sql-Max-Repeat"));
+    }
+
+    private Member createMember() {
+        Member member = new Member();
+        member.setName("커서회원-" + System.nanoTime());
+        member.setAddress(new Address("서울특별시", "종로1로", "123-123"));
+        em.persist(member);
+        return member;
+    }
+
+    private Order createOrder(Member member, LocalDateTime orderDate) {
+        Delivery delivery = new Delivery();
+        delivery.setAddress(member.getAddress());
+        Order order = Order.createOrder(member, delivery);
+        order.setOrderDate(orderDate);
+        em.persist(order);
+        return order;
+    }
+}
@@ -0,0 +1,130 @@
+package jpabook.jpashop.datasource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*
+ * 인메모리 H2 두 개를 primary/replica 로 두고, 어느 쪽 DB 에서 SQL 이 실행됐는지 확인한다.
+ * */
+public class ReplicaRoutingDataSourceTest {
+
+    DataSource primary;
+    DataSource replica;
+
+    @Before
+    public void setUp() {
+        primary = h2("primary");
+        replica = h2("replica");
+    }
+
+    @Test
+    public void 읽기전용_트랜잭션은_replica() throws Exception {
+        Route route = new Route(primary, replica, Duration.ZERO);
+
+        assertEquals("replica", route.read());
+        assertEquals("primary", route.write());
+        assertEquals("트랜잭션 밖은 primary 를 사용한다.", "primary", route.jdbc.queryForObject("select name from route", String.class));
+    }
+
+    @Test
+    public void 쓰기_직후_같은_스레드의_읽기는_primary() throws Exception {
+        Route route = new Route(primary, replica, Duration.ofHours(1));
+
+        assertEquals("replica", route.read());
+        route.write();
+
+        assertEquals("primary", route.read());
+        assertEquals("다른 스레드는 replica 를 사용한다.", "replica", CompletableFuture.supplyAsync(route::read).get());
+    }
+
+    @Test
+    public void replica_장애시_primary() throws Exception {
+        DataSource down = new DriverManagerDataSource("jdbc:h2:tcp://localhost:1/~/none", "sa", "");
+        Route route = new Route(primary, down, Duration.ZERO);
+
+        assertEquals("primary", route.read());
+        assertEquals(ReplicaRoutingDataSource.Target.PRIMARY,
+                route.readOnlyTx.execute(status -> route.routing.currentTarget()));
+    }
+
+    @Test
+    public void 계정을_지정한_커넥션도_라우팅() throws Exception {
+        Route route = new Route(primary, replica, Duration.ZERO);
+
+        assertEquals("replica", route.readOnlyTx.execute(status -> name(route.routing, "sa", "")));
+        assertEquals("primary", route.tx.execute(status -> name(route.routing, "sa", "")));
+    }
+
+    @Test
+    public void replica_커넥션_콜백() throws Exception {
+        Route route = new Route(primary, replica, Duration.ZERO);
+        AtomicInteger replicaConnections = new AtomicInteger();
+        route.routing.setOnReplicaConnection(replicaConnections::incrementAndGet);
+
+        route.write();
+        assertEquals("primary 커넥션에서는 호출하지 않는다.", 0, replicaConnections.get());
+        route.read();
+        assertEquals(1, replicaConnections.get());
+    }
+
+    private static String name(DataSource dataSource, String username, String password) {
+        try (Connection connection = dataSource.getConnection(username, password);
+             ResultSet rs = connection.createStatement().executeQuery("select name from route")) {
+            rs.next();
+            return rs.getString(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static DataSource h2(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + "-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table route(name varchar(20))");
+        jdbc.update("insert into route values (?)", name);
+        return dataSource;
+    }
+
+    static class Route {
+        final ReplicaRoutingDataSource routing;
+        final JdbcTemplate jdbc;
+        final TransactionTemplate tx;
+        final TransactionTemplate readOnlyTx;
+
+        Route(DataSource primary, DataSource replica, Duration maxLag) {
+            routing = new ReplicaRoutingDataSource(primary, replica, maxLag, Duration.ofMinutes(1));
+            DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+            DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+            jdbc = new JdbcTemplate(dataSource);
+            tx = new TransactionTemplate(transactionManager);
+            readOnlyTx = new TransactionTemplate(transactionManager);
+            readOnlyTx.setReadOnly(true);
+        }
+
+        String read() {
+            return readOnlyTx.execute(status -> jdbc.queryForObject("select name from route", String.class));
+        }
+
+        String write() {
+            return tx.execute(status -> {
+                jdbc.update("update route set name = name");
+                return jdbc.queryForObject("select name from route", String.class);
+            });
+        }
+    }
+}
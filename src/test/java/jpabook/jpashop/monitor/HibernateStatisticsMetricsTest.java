@@ -0,0 +1,75 @@
+package jpabook.jpashop.monitor;
+
+import javax.persistence.EntityManager;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jpabook.jpashop.domain.Member;
+
+import static org.hamcrest.Matchers.hasItems;
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+// 쿼리별 통계는 통계 수집이 켜져 있을 때만 남는다. 테스트 application.yml 에는 없으므로 여기서 켠다.
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@Transactional
+public class HibernateStatisticsMetricsTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    HibernateStatisticsMetrics metrics;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    private static final String QUERY_A = "select m from Member m where m.name = :name";
+    private static final String QUERY_B = "select count(m) from Member m";
+
+    @Test
+    public void 쿼리_최대시간_지표는_쿼리별로_늘어나지_않음() throws Exception {
+        //when
+        em.createQuery(QUERY_A, Member.class).setParameter("name", "통계").getResultList();
+        em.createQuery(QUERY_B, Long.class).getSingleResult();
+
+        //then
+        assertEquals("쿼리 수와 상관없이 지표는 하나다.", 1, meterRegistry.find("jpashop.hibernate.query.max").meters().size());
+        assertNull("쿼리 문자열을 태그로 붙이지 않는다.",
+                meterRegistry.find("jpashop.hibernate.query.max").tagKeys("query").timeGauge());
+        mockMvc.perform(get("/api/admin/hibernate").param("queryLimit", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.slowestQueries[*].query", hasItems(QUERY_A, QUERY_B)));
+    }
+
+    @Test
+    public void flush_관리엔티티수() throws Exception {
+        //given
+        long before = metrics.getFlushEntities().count();
+        Member member = new Member();
+        member.setName("flush통계");
+        em.persist(member);
+
+        //when
+        em.flush();
+
+        //then
+        assertEquals(before + 1, metrics.getFlushEntities().count());
+        assertTrue("방금 저장한 회원이 관리 중이다.", metrics.getFlushEntities().max() >= 1);
+    }
+}
@@ -0,0 +1,31 @@
+package jpabook.jpashop.monitor;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 테스트에서 특정 호출이 실행하는 SQL 수를 검증한다.
+ * 쓰기 SQL 은 flush 시점에 실행되므로, 필요하면 측정 블록 안에서 em.flush() 까지 호출한다.
+ */
+public final class SqlCountAssert {
+
+    private SqlCountAssert() {
+    }
+
+    public static SqlStatistics measure(Runnable call) {
+        SqlStatistics statistics = SqlCounter.start();
+        try {
+            call.run();
+        } finally {
+            SqlCounter.stop();
+        }
+        return statistics;
+    }
+
+    public static SqlStatistics assertMaxStatements(int max, Runnable call) {
+        SqlStatistics statistics = measure(call);
+        assertTrue("SQL 실행 수가 " + max + "번 이하여야 한다. 실제: " + statistics.getCount()
+                        + ", 반복된 SQL: " + statistics.getRepeatedShapes(),
+                statistics.getCount() <= max);
+        return statistics;
+    }
+}
@@ -0,0 +1,58 @@
+package jpabook.jpashop.monitor;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SqlCountFilterTest {
+
+    @Test
+    public void 작은_본문은_끝난_뒤_헤더를_붙임() throws Exception {
+        //given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        SqlStatistics statistics = new SqlStatistics();
+        SqlCountFilter.SqlHeaderResponse wrapper = new SqlCountFilter.SqlHeaderResponse(response, statistics, 16);
+
+        //when 본문을 쓴 뒤에 실행된 SQL(직렬화 중 지연 로딩)도 헤더에 포함된다
+        wrapper.getOutputStream().write(bytes("0123456789"));
+        wrapper.getOutputStream().flush();
+        statistics.record("select 1", 1_000_000);
+        assertEquals("모으는 중에는 원래 응답에 쓰지 않는다.", 0, response.getContentAsByteArray().length);
+        wrapper.finish();
+
+        //then
+        assertEquals("1", response.getHeader(SqlCountFilter.COUNT_HEADER));
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    @Test
+    public void 큰_본문은_버퍼를_넘으면_바로_내보냄() throws Exception {
+        //given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        SqlStatistics statistics = new SqlStatistics();
+        statistics.record("select 1", 1_000_000);
+        SqlCountFilter.SqlHeaderResponse wrapper = new SqlCountFilter.SqlHeaderResponse(response, statistics, 16);
+
+        //when
+        wrapper.getOutputStream().write(bytes("0123456789"));
+        assertNull(response.getHeader(SqlCountFilter.COUNT_HEADER));
+        wrapper.getOutputStream().write(bytes("abcdefghij"));
+
+        //then 버퍼가 넘친 시점의 값으로 헤더를 붙이고, 모은 본문은 원래 응답으로 넘어간다
+        assertEquals("1", response.getHeader(SqlCountFilter.COUNT_HEADER));
+        assertEquals("0123456789abcdefghij", response.getContentAsString());
+
+        statistics.record("select 2", 1_000_000);
+        wrapper.finish();
+        assertEquals("이미 붙인 헤더는 바꾸지 않는다.", "1", response.getHeader(SqlCountFilter.COUNT_HEADER));
+        assertEquals("0123456789abcdefghij", response.getContentAsString());
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
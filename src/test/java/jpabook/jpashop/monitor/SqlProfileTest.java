@@ -0,0 +1,47 @@
+package jpabook.jpashop.monitor;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class SqlProfileTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    public void 엔드포인트별_SQL_모양() throws Exception {
+        //given
+        mockMvc.perform(post("/api/admin/sql/reset")).andExpect(status().isOk());
+
+        //when 같은 모양을 다른 값으로 두 번 실행한다
+        mockMvc.perform(get("/api/v6/orders").param("after", "1").param("limit", "10")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/v6/orders").param("after", "2").param("limit", "20")).andExpect(status().isOk());
+
+        //then
+        mockMvc.perform(get("/api/admin/sql/shapes").param("endpoint", "OrderApiController.ordersV6"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].endpoint").value("OrderApiController.ordersV6"))
+                .andExpect(jsonPath("$.data[0].sql", containsString("from order_view")))
+                .andExpect(jsonPath("$.data[0].sql", not(containsString("\n"))))
+                .andExpect(jsonPath("$.data[0].execute.count").value(2))
+                .andExpect(jsonPath("$.data[0].fetch.count", greaterThanOrEqualTo(2)));
+    }
+}
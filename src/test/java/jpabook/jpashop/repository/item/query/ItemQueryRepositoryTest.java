@@ -0,0 +1,92 @@
+package jpabook.jpashop.repository.item.query;
+
+import jpabook.jpashop.domain.item.Book;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class ItemQueryRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    ItemQueryRepository itemQueryRepository;
+
+    @Test
+    public void 상품명검색_LIKE_특수문자는_글자로_취급() throws Exception {
+        //given
+        String prefix = "검색" + System.nanoTime();
+        Long percent = createBook(prefix + "100%").getId();
+        createBook(prefix + "100원");
+        Long underscore = createBook(prefix + "a_b").getId();
+        createBook(prefix + "axb");
+        Long bang = createBook(prefix + "c!d").getId();
+        createBook(prefix + "cd");
+        em.flush();
+        em.clear();
+
+        //when then % 와 _ 는 와일드카드가 아니고, 이스케이프 문자(!) 자체도 검색된다
+        assertEquals(Collections.singletonList(percent), ids(itemQueryRepository.findByNamePrefix(prefix + "100%", 10)));
+        assertEquals(Collections.singletonList(underscore), ids(itemQueryRepository.findByNamePrefix(prefix + "a_", 10)));
+        assertEquals(Collections.singletonList(bang), ids(itemQueryRepository.findByNamePrefix(prefix + "c!", 10)));
+        assertEquals(6, itemQueryRepository.findByNamePrefix(prefix, 10).size());
+    }
+
+    @Test
+    public void 상품목록_키셋페이징() throws Exception {
+        //given
+        Long first = createBook("페이징A").getId();
+        Long second = createBook("페이징B").getId();
+        Long third = createBook("페이징C").getId();
+        em.flush();
+        em.clear();
+
+        //when 2건씩 third 를 지날 때까지 넘긴다
+        List<Long> walked = new ArrayList<>();
+        Long after = first - 1;
+        while (!walked.contains(third)) {
+            List<ItemQueryDto> page = itemQueryRepository.findItems(after, 2);
+            assertFalse("third 에 닿기 전에 페이지가 끝나면 안 된다.", page.isEmpty());
+            walked.addAll(ids(page));
+            after = page.get(page.size() - 1).getItemId();
+        }
+
+        //then 이전 페이지의 마지막 id 다음부터 빠짐없이, 겹치지 않게 이어진다
+        assertEquals(Arrays.asList(first, second, third), walked.stream()
+                .filter(id -> id.equals(first) || id.equals(second) || id.equals(third))
+                .collect(Collectors.toList()));
+        assertEquals("중복된 상품이 없어야 한다.", walked.size(), new HashSet<>(walked).size());
+        assertEquals("id 순서대로 이어져야 한다.", walked.stream().sorted().collect(Collectors.toList()), walked);
+    }
+
+    private List<Long> ids(List<ItemQueryDto> items) {
+        return items.stream().map(ItemQueryDto::getItemId).collect(Collectors.toList());
+    }
+
+    private Book createBook(String name) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        em.persist(book);
+        return book;
+    }
+}
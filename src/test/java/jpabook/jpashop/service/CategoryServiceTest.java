@@ -0,0 +1,185 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.domain.item.Movie;
+import jpabook.jpashop.monitor.SqlCountAssert;
+import jpabook.jpashop.repository.CategoryRepository;
+import jpabook.jpashop.repository.ItemRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class CategoryServiceTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    CategoryService categoryService;
+
+    @Autowired
+    CategoryRepository categoryRepository;
+
+    @Autowired
+    ItemRepository itemRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    public void 카테고리_클로저() throws Exception {
+        //given
+        Long root = categoryService.saveCategory("도서", null);
+        Long it = categoryService.saveCategory("IT", root);
+        Long java = categoryService.saveCategory("자바", it);
+
+        //when
+        em.flush();
+        em.clear();
+
+        //then
+        List<Long> subtree = em.createQuery(
+                "select cc.descendant.id from CategoryClosure cc where cc.ancestor.id = :id order by cc.depth", Long.class)
+                .setParameter("id", root)
+                .getResultList();
+        assertEquals("서브트리는 자기 자신과 모든 자손이다.", List.of(root, it, java), subtree);
+
+        Integer depth = em.createQuery(
+                "select cc.depth from CategoryClosure cc where cc.ancestor.id = :a and cc.descendant.id = :d", Integer.class)
+                .setParameter("a", root)
+                .setParameter("d", java)
+                .getSingleResult();
+        assertEquals(2, depth.intValue());
+    }
+
+    @Test
+    public void 카테고리_트리() throws Exception {
+        //given
+        Long root = categoryService.saveCategory("음반", null);
+        Long kpop = categoryService.saveCategory("가요", root);
+        Long ballad = categoryService.saveCategory("발라드", kpop);
+        Long pop = categoryService.saveCategory("팝", root);
+
+        //when
+        CategoryTree tree = CategoryTree.of(categoryRepository.findAllRows());
+
+        //then
+        assertEquals(List.of(root, kpop, ballad, pop),
+                tree.subtree(root).stream().map(CategoryTree.Node::getId).collect(Collectors.toList()));
+        assertEquals(List.of(root, kpop, ballad),
+                tree.breadcrumbs(ballad).stream().map(CategoryTree.Node::getId).collect(Collectors.toList()));
+        assertEquals(2, tree.get(ballad).getDepth());
+    }
+
+    @Test
+    public void 카테고리_서브트리_상품() throws Exception {
+        //given
+        Long root = categoryService.saveCategory("영상", null);
+        Long movie = categoryService.saveCategory("영화", root);
+        Long other = categoryService.saveCategory("기타", null);
+
+        Book book = new Book();
+        book.setName("영화 원작 소설");
+        em.persist(book);
+        Movie film = new Movie();
+        film.setName("영화1");
+        em.persist(film);
+        Movie otherFilm = new Movie();
+        otherFilm.setName("다른 영화");
+        em.persist(otherFilm);
+
+        categoryRepository.findOne(root).getItems().add(book);
+        categoryRepository.findOne(movie).getItems().add(book); // 서브트리 안에서 두 카테고리에 속한 상품
+        categoryRepository.findOne(movie).getItems().add(film);
+        categoryRepository.findOne(other).getItems().add(otherFilm);
+        em.flush();
+
+        //when
+        List<Item> all = itemRepository.findAllInCategory(root, null, null, 10);
+        List<Item> movies = itemRepository.findAllInCategory(root, "Movie", null, 10);
+        List<Item> next = itemRepository.findAllInCategory(root, null, all.get(0).getId(), 10);
+
+        //then
+        assertEquals("하위 카테고리 상품도 포함하고, 중복 없이 한 번씩 나와야한다.", 2, all.size());
+        assertEquals(List.of(film.getId()), movies.stream().map(Item::getId).collect(Collectors.toList()));
+        assertEquals(1, next.size());
+    }
+
+    @Test
+    public void 카테고리_클로저_백필() throws Exception {
+        //given 클로저 테이블 이전에 저장된 카테고리처럼 클로저 행을 지운다
+        Long root = categoryService.saveCategory("가전", null);
+        Long tv = categoryService.saveCategory("TV", root);
+        Long oled = categoryService.saveCategory("OLED", tv);
+        em.flush();
+        em.createQuery("delete from CategoryClosure cc where cc.descendant.id in :ids")
+                .setParameter("ids", List.of(root, tv, oled))
+                .executeUpdate();
+        em.clear();
+
+        //when 백필 러너는 jpashop.category.backfill-closure 가 켜져 있을 때만 빈으로 등록되므로 직접 만든다
+        CategoryClosureBackfill categoryClosureBackfill = new CategoryClosureBackfill(categoryRepository, transactionManager);
+        long backfilled = categoryClosureBackfill.backfill();
+        em.flush();
+        em.clear();
+
+        //then
+        assertEquals(3, backfilled);
+        List<Long> subtree = em.createQuery(
+                "select cc.descendant.id from CategoryClosure cc where cc.ancestor.id = :id order by cc.depth", Long.class)
+                .setParameter("id", root)
+                .getResultList();
+        assertEquals(List.of(root, tv, oled), subtree);
+        assertEquals("다시 실행해도 이미 채운 카테고리는 건너뛴다.", 0, categoryClosureBackfill.backfill());
+    }
+
+    @Test
+    public void 카테고리_트리_캐시() throws Exception {
+        //given
+        CategoryTree tree = categoryService.getTree();
+
+        //when, then
+        SqlCountAssert.assertMaxStatements(0, () -> assertSame(tree, categoryService.getTree()));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void 카테고리_트리_커밋후_무효화() throws Exception {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        CategoryTree before = categoryService.getTree();
+
+        //when
+        Long id = tx.execute(status -> {
+            Long saved = categoryService.saveCategory("무효화", null);
+            assertSame("커밋 전에는 캐시를 비우지 않는다.", before, categoryService.getTree());
+            return saved;
+        });
+
+        //then
+        try {
+            CategoryTree after = categoryService.getTree();
+            assertNotSame("커밋 후에는 트리를 다시 만든다.", before, after);
+            assertNotNull(after.get(id));
+        } finally {
+            tx.executeWithoutResult(status -> em.remove(categoryRepository.findOne(id))); // 클로저 행은 cascade 로 함께 지워진다
+        }
+    }
+}
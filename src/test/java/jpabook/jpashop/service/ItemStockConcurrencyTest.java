@@ -0,0 +1,117 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*
+ * 여러 스레드가 각자의 트랜잭션으로 같은 상품을 동시에 주문한다.
+ * 트랜잭션이 커밋되어야 다른 스레드에 보이므로 클래스에 @Transactional 을 붙이지 않는다.
+ * */
+@Slf4j
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ItemStockConcurrencyTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    OrderService orderService;
+
+    @Autowired
+    ItemService itemService;
+
+    @Test
+    public void 동시주문_재고유실없음() throws Exception {
+        //given
+        int stock = 100;
+        int threads = 8;
+        int ordersPerThread = 25; // 총 200번 주문 시도. 재고보다 많다.
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long memberId = tx.execute(status -> createMember().getId());
+        Long itemId = tx.execute(status -> createBook("동시성 JPA", 10000, stock).getId());
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        AtomicInteger ordered = new AtomicInteger();
+        AtomicInteger soldOut = new AtomicInteger();
+
+        //when
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                startLatch.await();
+                for (int i = 0; i < ordersPerThread; i++) {
+                    try {
+                        orderService.order(memberId, itemId, 1);
+                        ordered.incrementAndGet();
+                    } catch (NotEnoughStockException e) {
+                        soldOut.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long start = System.nanoTime();
+        startLatch.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        executor.shutdown();
+
+        //then
+        Item item = itemService.findOne(itemId);
+        log.info("동시주문 {}건 / {}ms ({} orders/sec), 재고부족 {}건",
+                ordered.get(), elapsedMillis, ordered.get() * 1000L / elapsedMillis, soldOut.get());
+
+        assertEquals("재고만큼만 주문되어야 한다.", stock, ordered.get());
+        assertEquals("나머지는 재고부족이어야 한다.", threads * ordersPerThread - stock, soldOut.get());
+        assertEquals("재고가 유실 없이 0이 되어야 한다.", 0, item.getStockQuantity());
+    }
+
+    private Book createBook(String name, int price, int stockQuantity) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(stockQuantity);
+        em.persist(book);
+        return book;
+    }
+
+    private Member createMember() {
+        Member member = new Member();
+        member.setName("동시주문회원-" + System.nanoTime());
+        member.setAddress(new Address("서울특별시", "종로1로", "123-123"));
+        em.persist(member);
+        return member;
+    }
+}
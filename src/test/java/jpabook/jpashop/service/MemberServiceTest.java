@@ -1,6 +1,8 @@
 package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.monitor.SqlCountAssert;
+import jpabook.jpashop.monitor.SqlStatistics;
 import jpabook.jpashop.repository.MemberRepository;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -10,6 +12,8 @@ import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+
 import static org.junit.Assert.*;
 
 @RunWith(SpringRunner.class)
@@ -17,12 +21,18 @@ import static org.junit.Assert.*;
 @Transactional
 public class MemberServiceTest {
 
+    @Autowired
+    EntityManager em;
+
     @Autowired
     MemberService memberService;
 
     @Autowired
     MemberRepository memberRepository;
 
+    @Autowired
+    MemberNameFilter memberNameFilter;
+
     @Test
     public void 회원가입() throws Exception {
         //given
@@ -36,6 +46,43 @@ public class MemberServiceTest {
         assertEquals(member, memberRepository.findOne(saveId));
     }
 
+    @Test
+    public void 이름필터() throws Exception {
+        //given
+        String name = "필터회원-" + System.nanoTime();
+        Member member = new Member();
+        member.setName(name);
+
+        //when
+        SqlStatistics statistics = SqlCountAssert.measure(() -> memberService.join(member));
+
+        //then
+        assertTrue("필터에 없는 이름은 DB 에서 중복 확인하지 않는다. 실행된 SQL: " + statistics.getShapes(),
+                statistics.getShapes().keySet().stream().noneMatch(sql -> sql.contains("from member ")));
+        assertTrue("가입한 이름은 필터에 있어야한다.", memberNameFilter.mightContain(name));
+        assertTrue(memberRepository.existsByName(name));
+        assertFalse(memberRepository.existsByName(name + "-없음"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void 중복회원예외_유니크제약() throws Exception {
+        //given 필터를 거치지 않고 저장된 회원 (동시에 가입한 다른 트랜잭션처럼)
+        String name = "제약회원-" + System.nanoTime();
+        Member saved = new Member();
+        saved.setName(name);
+        em.persist(saved);
+        em.flush();
+
+        Member member = new Member();
+        member.setName(name);
+
+        //when
+        memberService.join(member); //필터에 없어도 유니크 제약 위반이 중복 회원 예외로 바뀌어야한다.
+
+        //then
+        fail("예외가 발생해야 한다.");
+    }
+
     @Test(expected = IllegalStateException.class)
     public void 중복회원예외() throws Exception {
         //given
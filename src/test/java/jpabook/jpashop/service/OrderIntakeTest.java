@@ -0,0 +1,189 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+ * 비동기 주문 접수. writer 스레드가 자신의 트랜잭션으로 커밋하므로 클래스에 @Transactional 을 붙이지 않는다.
+ * max-wait-ms 를 길게 둬서 한꺼번에 넣은 주문이 한 배치로 모이게 한다.
+ * */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "jpashop.order.intake.enabled=true",
+        "jpashop.order.intake.batch-size=50",
+        "jpashop.order.intake.max-wait-ms=500"})
+@AutoConfigureMockMvc
+public class OrderIntakeTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    OrderIntake orderIntake;
+
+    @SpyBean
+    OrderService orderService;
+
+    @Autowired
+    ItemService itemService;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    private Long memberId;
+    private Long itemId;
+
+    @Before
+    public void setUp() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        memberId = tx.execute(status -> createMember().getId());
+        itemId = tx.execute(status -> createBook("접수 JPA", 10000, 100).getId());
+        clearInvocations(orderService);
+    }
+
+    @Test
+    public void 주문을_모아서_한번에_커밋() throws Exception {
+        //when
+        List<CompletableFuture<Long>> futures = submit(10);
+
+        //then
+        for (CompletableFuture<Long> future : futures) {
+            assertNotNull(future.get(10, TimeUnit.SECONDS));
+        }
+        verify(orderService, atMost(2)).orderBatch(anyList());
+        assertEquals(90, itemService.findOne(itemId).getStockQuantity());
+    }
+
+    @Test
+    public void 배치_실패시_한건씩_다시저장() throws Exception {
+        //given 여러 건을 묶은 배치 트랜잭션은 실패한다
+        doThrow(new IllegalStateException("배치 실패"))
+                .when(orderService).orderBatch(argThat(commands -> commands.size() > 1));
+        doCallRealMethod()
+                .when(orderService).orderBatch(argThat(commands -> commands.size() == 1));
+
+        //when
+        List<CompletableFuture<Long>> futures = submit(5);
+
+        //then
+        for (CompletableFuture<Long> future : futures) {
+            assertNotNull("한 건씩 다시 저장하면 성공해야 한다.", future.get(10, TimeUnit.SECONDS));
+        }
+        verify(orderService, times(5)).orderBatch(argThat(commands -> commands.size() == 1));
+        assertEquals(95, itemService.findOne(itemId).getStockQuantity());
+    }
+
+    @Test
+    public void 비동기주문_재고부족은_409() throws Exception {
+        //when
+        MvcResult result = mockMvc.perform(post("/api/orders/async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"memberId\":" + memberId + ",\"items\":[{\"itemId\":" + itemId + ",\"count\":101}]}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isConflict());
+        assertEquals(100, itemService.findOne(itemId).getStockQuantity());
+    }
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    public void 종료시_대기중인_주문은_저장하고_새주문은_거절() throws Exception {
+        //given
+        List<CompletableFuture<Long>> futures = submit(20);
+
+        //when
+        orderIntake.stop();
+
+        //then
+        for (CompletableFuture<Long> future : futures) {
+            assertTrue("종료 전에 접수한 주문은 모두 처리되어야 한다.", future.isDone());
+            assertNotNull(future.get());
+        }
+        assertEquals(80, itemService.findOne(itemId).getStockQuantity());
+
+        try {
+            orderIntake.submit(OrderCommand.of(memberId, itemId, 1)).get();
+            fail("종료 후 주문은 거절되어야 한다.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        MvcResult result = mockMvc.perform(post("/api/orders/async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"memberId\":" + memberId + ",\"items\":[{\"itemId\":" + itemId + ",\"count\":1}]}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists("Retry-After"));
+    }
+
+    private List<CompletableFuture<Long>> submit(int count) {
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(orderIntake.submit(OrderCommand.of(memberId, itemId, 1)));
+        }
+        return futures;
+    }
+
+    private Book createBook(String name, int price, int stockQuantity) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(stockQuantity);
+        em.persist(book);
+        return book;
+    }
+
+    private Member createMember() {
+        Member member = new Member();
+        member.setName("접수회원-" + System.nanoTime());
+        member.setAddress(new Address("서울특별시", "종로1로", "123-123"));
+        em.persist(member);
+        return member;
+    }
+}
@@ -4,10 +4,18 @@ import jpabook.jpashop.domain.Address;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.OrderView;
 import jpabook.jpashop.domain.item.Book;
 import jpabook.jpashop.domain.item.Item;
 import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.monitor.SqlCountAssert;
+import jpabook.jpashop.repository.OrderFetchPlan;
 import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.order.query.OrderListDto;
+import jpabook.jpashop.repository.order.view.OrderViewRepository;
+import jpabook.jpashop.service.OrderCommand.OrderLine;
+import org.hibernate.Hibernate;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,6 +24,10 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -33,6 +45,12 @@ public class OrderServiceTest {
     @Autowired
     OrderRepository orderRepository;
 
+    @Autowired
+    OrderViewRepository orderViewRepository;
+
+    @Autowired
+    MemberService memberService;
+
     @Test
     public void 상품주문() throws Exception {
         //given
@@ -55,6 +73,22 @@ public class OrderServiceTest {
         assertEquals("멤버 이름은 회원1이어야 한다.", "회원1", getOrder.getMember().getName());
     }
 
+    @Test
+    public void 상품주문_쿼리수() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 10);
+        em.flush();
+
+        //when, then
+        //재고 update 1 + 상품 refresh 1 + 시퀀스(블록을 새로 받을 때만) 3 + insert(delivery, orders, order_item, order_view) 4
+        //+ 매출 집계 merge(sales_daily, sales_item_daily) 2
+        SqlCountAssert.assertMaxStatements(11, () -> {
+            orderService.order(member.getId(), book.getId(), 2);
+            em.flush();
+        });
+    }
+
     @Test(expected = NotEnoughStockException.class)
     public void 상품주문_재고수량초과() throws Exception {
         //given
@@ -85,7 +119,228 @@ public class OrderServiceTest {
         Order getOrder = orderRepository.findOne(orderId);
 
         assertEquals("주문 취소시 CANCEL이 나와야한다.", OrderStatus.CANCEL, getOrder.getStatus());
-        assertEquals("주문이 취소된 상품은 다시 재고가 증가해야한다.", 10, book.getStockQuantity());
+        assertEquals("주문이 취소된 상품은 다시 재고가 증가해야한다.", 10, em.find(Book.class, book.getId()).getStockQuantity());
+    }
+
+    @Test
+    public void 주문취소_두번() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 10);
+        Long orderId = orderService.order(member.getId(), book.getId(), 2);
+        orderService.cancelOrder(orderId);
+
+        //when
+        try {
+            orderService.cancelOrder(orderId);
+            fail("이미 취소된 주문은 다시 취소할 수 없다.");
+        } catch (IllegalStateException e) {
+            //then
+            assertEquals("재고는 한 번만 복구되어야 한다.", 10, em.find(Book.class, book.getId()).getStockQuantity());
+        }
+    }
+
+    @Test
+    public void 여러건주문_일부실패() throws Exception {
+        //given
+        Member member = createMember();
+        Book book1 = createBook("시골 JPA", 10000, 10);
+        Book book2 = createBook("토비의 봄", 20000, 1);
+
+        List<OrderCommand> commands = Arrays.asList(
+                new OrderCommand(member.getId(), Arrays.asList(
+                        new OrderLine(book1.getId(), 2), new OrderLine(book2.getId(), 1))),
+                new OrderCommand(member.getId(), Arrays.asList(
+                        new OrderLine(book1.getId(), 3), new OrderLine(book2.getId(), 1))), // book2 재고 부족
+                OrderCommand.of(member.getId(), book1.getId(), 1));
+
+        //when
+        List<OrderResult> results = orderService.orderBatch(commands);
+
+        //then
+        assertTrue(results.get(0).isSuccess());
+        assertFalse("재고가 부족한 주문은 실패해야한다.", results.get(1).isSuccess());
+        assertTrue(results.get(2).isSuccess());
+
+        Order getOrder = orderRepository.findOne(results.get(0).getOrderId());
+        assertEquals("주문상품이 2개여야한다.", 2, getOrder.getOrderItems().size());
+        assertEquals(10000 * 2 + 20000, getOrder.getTotalPrice());
+
+        em.flush();
+        em.refresh(book1);
+        em.refresh(book2);
+        assertEquals("실패한 주문에서 차감한 재고는 되돌려야한다.", 7, book1.getStockQuantity());
+        assertEquals(0, book2.getStockQuantity());
+    }
+
+    @Test
+    public void 주문금액_저장_검색() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 10);
+        Long orderId1 = orderService.order(member.getId(), book.getId(), 2);
+        Long orderId2 = orderService.order(member.getId(), book.getId(), 3);
+        em.flush();
+        em.clear();
+
+        //when
+        OrderSearch search = new OrderSearch();
+        search.setMemberName(member.getName());
+        search.setMinTotalPrice(25000);
+        List<Order> expensive = orderRepository.findAllByString(search);
+
+        search.setMinTotalPrice(null);
+        search.setSort(OrderSearch.OrderSort.TOTAL_PRICE_DESC);
+        List<Order> sorted = orderRepository.findAllByString(search);
+
+        //then
+        Order order1 = orderRepository.findOne(orderId1);
+        assertEquals("주문 금액은 주문상품 합계로 저장된다.", 20000, order1.getTotalPrice());
+        assertEquals(1, order1.getItemCount());
+        assertEquals(1, expensive.size());
+        assertEquals(orderId2, expensive.get(0).getId());
+        assertEquals(orderId2, sorted.get(0).getId());
+    }
+
+    @Test
+    public void 주문_fetch_plan() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 10);
+        Long orderId = orderService.order(member.getId(), book.getId(), 2);
+        em.flush();
+        em.clear();
+        OrderFetchPlan plan = OrderFetchPlan.parse("orderStatus", "member");
+
+        //when
+        List<Order> orders = new ArrayList<>();
+        SqlCountAssert.assertMaxStatements(1, () -> orders.addAll(orderRepository.findAllWithGraph(plan, orderId - 1, 1)));
+        List<Tuple> fields = orderRepository.findFields(plan, orderId - 1, 1);
+
+        //then
+        Order order = orders.get(0);
+        assertEquals(orderId, order.getId());
+        assertTrue("expand 한 연관관계는 같은 쿼리에서 조회한다.", Hibernate.isInitialized(order.getMember()));
+        assertFalse("expand 하지 않은 연관관계는 조인하지 않는다.", Hibernate.isInitialized(order.getDelivery()));
+        assertEquals(OrderStatus.ORDER, fields.get(0).get("orderStatus"));
+        assertEquals(2, fields.get(0).getElements().size());
+    }
+
+    @Test
+    public void 주문목록_페이지() throws Exception {
+        //given
+        Member member = createMember();
+        Book book1 = createBook("시골 JPA", 10000, 10);
+        Book book2 = createBook("도시 JPA", 20000, 10);
+        orderService.order(member.getId(), book1.getId(), 1);
+        Long orderId2 = orderService.order(member.getId(), book2.getId(), 2);
+        orderService.order(member.getId(), book1.getId(), 3);
+        em.flush();
+        em.clear();
+
+        OrderSearch search = new OrderSearch();
+        search.setMemberName(member.getName());
+        search.setSort(OrderSearch.OrderSort.TOTAL_PRICE_DESC);
+
+        //when
+        List<OrderListDto> page = new ArrayList<>();
+        SqlCountAssert.assertMaxStatements(2, () -> page.addAll(orderService.findOrderPage(search, 0, 1)));
+
+        //then
+        assertEquals("다음 페이지 확인용으로 size + 1 건을 조회한다.", 2, page.size());
+        OrderListDto first = page.get(0);
+        assertEquals(orderId2, first.getOrderId());
+        assertEquals(member.getName(), first.getMemberName());
+        assertEquals("도시 JPA", first.getItemName());
+        assertEquals(2, first.getCount());
+        assertEquals(40000, first.getTotalPrice());
+    }
+
+    @Test
+    public void 주문_일괄취소() throws Exception {
+        //given
+        Member member = createMember();
+        Book book1 = createBook("시골 JPA", 10000, 10);
+        Book book2 = createBook("도시 JPA", 20000, 10);
+        Long orderId1 = orderService.order(member.getId(), book1.getId(), 2);
+        Long orderId2 = orderService.order(member.getId(), book1.getId(), 3);
+        Long orderId3 = orderService.order(member.getId(), book2.getId(), 4);
+        orderService.cancelOrder(orderId3);
+        em.flush();
+        em.clear();
+
+        //when
+        List<BulkCancelResult> results = new ArrayList<>();
+        SqlCountAssert.assertMaxStatements(9, () ->
+                results.add(orderService.cancelOrders(Arrays.asList(orderId1, orderId2, orderId3, -1L))));
+
+        //then
+        BulkCancelResult result = results.get(0);
+        assertEquals(Arrays.asList(orderId1, orderId2), result.getCancelled());
+        assertEquals("이미 취소된 주문과 없는 주문은 건너뛴다.", 2, result.getFailures().size());
+        assertEquals(OrderStatus.CANCEL, orderRepository.findOne(orderId1).getStatus());
+        assertEquals(OrderStatus.CANCEL, orderRepository.findOne(orderId2).getStatus());
+        assertEquals("상품별로 합친 수량만큼 재고가 복구되어야 한다.", 10, em.find(Book.class, book1.getId()).getStockQuantity());
+        assertEquals("이미 취소된 주문의 재고는 다시 복구하지 않는다.", 10, em.find(Book.class, book2.getId()).getStockQuantity());
+    }
+
+    @Test
+    public void 조회모델_동기화() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 10);
+
+        //when 주문
+        Long orderId = orderService.order(member.getId(), book.getId(), 2);
+        em.flush();
+        em.clear();
+
+        //then
+        OrderView view = orderViewRepository.findOne(orderId);
+        assertEquals(member.getId(), view.getMemberId());
+        assertEquals(member.getName(), view.getMemberName());
+        assertEquals(OrderStatus.ORDER, view.getStatus());
+        assertEquals(20000, view.getTotalPrice());
+        assertEquals(1, view.getItemCount());
+
+        //when 취소, 회원 이름 변경
+        orderService.cancelOrder(orderId);
+        String newName = "조회모델회원-" + System.nanoTime();
+        memberService.update(member.getId(), newName);
+        em.flush();
+        em.clear();
+
+        //then
+        view = orderViewRepository.findOne(orderId);
+        assertEquals("취소하면 조회 모델도 CANCEL 이어야 한다.", OrderStatus.CANCEL, view.getStatus());
+        assertEquals("회원 이름을 바꾸면 조회 모델의 이름도 바뀌어야 한다.", newName, view.getMemberName());
+    }
+
+    @Test
+    public void 조회모델_백필() throws Exception {
+        //given 조회 모델이 생기기 전에 저장된 주문
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 10);
+        Long orderId = orderService.order(member.getId(), book.getId(), 3);
+        em.flush();
+        em.createNativeQuery("delete from order_view where order_id = :orderId")
+                .setParameter("orderId", orderId)
+                .executeUpdate();
+        em.clear();
+
+        //when
+        int inserted = orderViewRepository.backfill(1000);
+        em.clear();
+
+        //then
+        assertTrue(inserted >= 1);
+        assertEquals("백필은 이미 있는 조회 모델을 다시 만들지 않는다.", 0, orderViewRepository.backfill(1000));
+        OrderView view = orderViewRepository.findOne(orderId);
+        assertEquals(member.getName(), view.getMemberName());
+        assertEquals(member.getAddress().getCity(), view.getAddress().getCity());
+        assertEquals(OrderStatus.ORDER, view.getStatus());
+        assertEquals(30000, view.getTotalPrice());
+        assertEquals(1, view.getItemCount());
     }
 
     private Book createBook(String name, int price, int stockQuantity) {
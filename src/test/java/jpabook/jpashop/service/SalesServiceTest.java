@@ -0,0 +1,152 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.sales.SalesDailyDto;
+import jpabook.jpashop.repository.sales.SalesItemDto;
+import jpabook.jpashop.repository.sales.SalesRollupRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class SalesServiceTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    OrderService orderService;
+
+    @Autowired
+    SalesService salesService;
+
+    @Autowired
+    SalesRollupRepository salesRollupRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    public void 주문_취소_집계() throws Exception {
+        //given
+        LocalDate today = LocalDate.now();
+        Member member = createMember();
+        Book book = createBook("집계 JPA", 10000, 10);
+        long[] orderBefore = daily(today, OrderStatus.ORDER);
+        long[] cancelBefore = daily(today, OrderStatus.CANCEL);
+
+        //when
+        Long orderId1 = orderService.order(member.getId(), book.getId(), 2);
+        orderService.order(member.getId(), book.getId(), 3);
+        orderService.cancelOrder(orderId1);
+
+        //then
+        long[] orderAfter = daily(today, OrderStatus.ORDER);
+        long[] cancelAfter = daily(today, OrderStatus.CANCEL);
+        assertEquals("취소되지 않은 주문은 1건이다.", 1, orderAfter[0] - orderBefore[0]);
+        assertEquals(30000, orderAfter[1] - orderBefore[1]);
+        assertEquals("취소된 주문은 1건이다.", 1, cancelAfter[0] - cancelBefore[0]);
+        assertEquals(20000, cancelAfter[1] - cancelBefore[1]);
+
+        List<SalesItemDto> items = salesService.findTopItems(today, today, OrderStatus.ORDER, 1000);
+        SalesItemDto item = items.stream().filter(i -> i.getItemId().equals(book.getId())).findFirst().get();
+        assertEquals(3, item.getQuantity());
+        assertEquals(30000, item.getRevenue());
+    }
+
+    @Test
+    public void 집계_재생성() throws Exception {
+        //given
+        LocalDate today = LocalDate.now();
+        Member member = createMember();
+        Book book = createBook("재생성 JPA", 10000, 10);
+        orderService.order(member.getId(), book.getId(), 4);
+
+        //when
+        salesService.rebuild();
+
+        //then
+        List<SalesItemDto> items = salesService.findTopItems(today, today, OrderStatus.ORDER, 1000);
+        SalesItemDto item = items.stream().filter(i -> i.getItemId().equals(book.getId())).findFirst().get();
+        assertEquals("재생성한 집계는 주문에서 다시 계산한 값이어야한다.", 4, item.getQuantity());
+        assertEquals(40000, item.getRevenue());
+        assertTrue(daily(today, OrderStatus.ORDER)[0] >= 1);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void 집계행_동시생성() throws Exception {
+        //given 아직 행이 없는 날짜
+        LocalDate day = LocalDate.of(2999, 1, 1);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        CountDownLatch inserted = new CountDownLatch(1);
+
+        try {
+            //when 첫 트랜잭션이 행을 INSERT 하고 커밋하기 전에 두 번째 트랜잭션도 같은 행을 MERGE 한다
+            CompletableFuture<Void> first = CompletableFuture.runAsync(() -> tx.executeWithoutResult(status -> {
+                salesRollupRepository.addDaily(day, OrderStatus.ORDER, 0, 1, 100);
+                inserted.countDown();
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            inserted.await();
+            tx.executeWithoutResult(status -> salesRollupRepository.addDaily(day, OrderStatus.ORDER, 0, 1, 100));
+            first.get();
+
+            //then 중복 키 오류 없이 두 건 모두 더해진다
+            assertArrayEquals(new long[]{2, 200}, daily(day, OrderStatus.ORDER));
+        } finally {
+            tx.executeWithoutResult(status -> em.createNativeQuery("delete from sales_daily where sales_date = :day")
+                    .setParameter("day", day)
+                    .executeUpdate());
+        }
+    }
+
+    private long[] daily(LocalDate date, OrderStatus status) {
+        List<SalesDailyDto> daily = salesService.findDaily(date, date);
+        return daily.stream()
+                .filter(d -> d.getStatus() == status)
+                .map(d -> new long[]{d.getOrderCount(), d.getRevenue()})
+                .findFirst()
+                .orElse(new long[]{0, 0});
+    }
+
+    private Book createBook(String name, int price, int stockQuantity) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(stockQuantity);
+        em.persist(book);
+        return book;
+    }
+
+    private Member createMember() {
+        Member member = new Member();
+        member.setName("집계회원-" + System.nanoTime());
+        member.setAddress(new Address("서울특별시", "종로1로", "123-123"));
+        em.persist(member);
+        return member;
+    }
+}